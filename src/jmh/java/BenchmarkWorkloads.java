@@ -0,0 +1,216 @@
+import bench.Workload;
+import bench.WorkloadFactory;
+
+import java.util.Random;
+
+/**
+ * Benchmark workloads for {@link bench.AquariumBenchmark}, one per hot path.
+ */
+public class BenchmarkWorkloads implements WorkloadFactory {
+    private static final double WIDTH = 1024;
+    private static final double HEIGHT = 600;
+    private static final double SPRITE_SIZE = 500;
+    private static final int FOOD_COUNT = 50;
+
+    @Override
+    public Workload create(String name, int size) {
+        switch (name) {
+            case "fishUpdate":
+                return new FishUpdate(size, false);
+            case "schooling":
+                return new FishUpdate(size, true);
+            case "foodAssignment":
+                return new FoodAssignment(size);
+            case "particleUpdate":
+                return new ParticleUpdate(size);
+            case "depthSort":
+                return new DepthSort(size);
+            case "projection":
+                return new ProjectionPass(size);
+            case "integration":
+                return new Integration(size);
+            default:
+                throw new IllegalArgumentException("Unknown workload: " + name);
+        }
+    }
+
+    private static Simulation tank(int fishCount) {
+        Simulation simulation = new Simulation(WIDTH, HEIGHT, 16, 1);
+        simulation.spawnFish(fishCount, new double[] { SPRITE_SIZE }, new double[] { SPRITE_SIZE });
+        Random random = new Random(42);
+        for (int i = 0; i < FOOD_COUNT; i++)
+            simulation.addFood(random.nextDouble() * WIDTH, random.nextDouble() * HEIGHT, random.nextDouble() * 400);
+        return simulation;
+    }
+
+    /** Steering and integration for every fish, no food in reach, optionally with schooling. */
+    private static class FishUpdate implements Workload {
+        private final Simulation simulation;
+        private final FishUpdater updater = new FishUpdater(1);
+        private final SpatialHash grid;
+        private final Food[] noFood;
+
+        FishUpdate(int size, boolean schooling) {
+            simulation = tank(size);
+            grid = schooling ? new SpatialHash(100) : null;
+            noFood = new Food[size];
+        }
+
+        @Override
+        public long run() {
+            if (grid != null)
+                grid.rebuild(simulation.getFish());
+            return updater.update(simulation.getFish(), Simulation.TICK_DT, WIDTH, HEIGHT, noFood, grid);
+        }
+
+        @Override
+        public void close() {
+            updater.shutdown();
+            simulation.shutdown();
+        }
+    }
+
+    /** Spatial hash rebuild plus one nearest-fish query per food pellet. */
+    private static class FoodAssignment implements Workload {
+        private final Simulation simulation;
+
+        FoodAssignment(int size) {
+            simulation = tank(size);
+        }
+
+        @Override
+        public long run() {
+            simulation.assignFood();
+            return simulation.getFood().size();
+        }
+
+        @Override
+        public void close() {
+            simulation.shutdown();
+        }
+    }
+
+    /** One particle tick; expired plankton are respawned so the pool stays full. */
+    private static class ParticleUpdate implements Workload {
+        private final ParticleSystem particles;
+
+        ParticleUpdate(int size) {
+            particles = new ParticleSystem(size);
+            refill();
+        }
+
+        private void refill() {
+            while (particles.size() < particles.capacity()) {
+                particles.spawn(Math.random() * WIDTH, Math.random() * HEIGHT, Math.random() * 500,
+                        Particle.Type.PLANKTON);
+            }
+        }
+
+        @Override
+        public long run() {
+            particles.update(Simulation.TICK_DT);
+            refill();
+            return particles.size();
+        }
+    }
+
+    /**
+     * Only the integration kernels on bare arrays: the fish velocity clamp and
+     * step, then one particle-style position step per axis.
+     */
+    private static class Integration implements Workload {
+        private final int size;
+        private final double[] x, y, z, vx, vy, vz, ax, ay, az, limit, speed;
+
+        Integration(int size) {
+            this.size = size;
+            Random random = new Random(42);
+            x = filled(random, size, WIDTH);
+            y = filled(random, size, HEIGHT);
+            z = filled(random, size, 500);
+            vx = filled(random, size, 4);
+            vy = filled(random, size, 4);
+            vz = filled(random, size, 4);
+            ax = filled(random, size, 0.2);
+            ay = filled(random, size, 0.2);
+            az = filled(random, size, 0.2);
+            limit = new double[size];
+            for (int i = 0; i < size; i++)
+                limit[i] = 1 + random.nextDouble() * 3; // Some fish over the limit, some under
+            speed = new double[size];
+        }
+
+        private static double[] filled(Random random, int n, double range) {
+            double[] a = new double[n];
+            for (int i = 0; i < n; i++)
+                a[i] = (random.nextDouble() - 0.5) * range;
+            return a;
+        }
+
+        @Override
+        public long run() {
+            IntegrationKernel kernel = IntegrationKernel.get();
+            kernel.integrateClamped(x, y, z, vx, vy, vz, ax, ay, az, limit, speed, 0, size);
+            kernel.integrate(x, vx, Simulation.TICK_DT, 0, size);
+            kernel.integrate(y, vy, Simulation.TICK_DT, 0, size);
+            kernel.integrate(z, vz, Simulation.TICK_DT, 0, size);
+            return size;
+        }
+    }
+
+    /** Bulk perspective projection of every fish at a new camera angle. */
+    private static class ProjectionPass implements Workload {
+        private final Simulation simulation;
+        private final Camera camera = new Camera(WIDTH, HEIGHT);
+        private final Projection projection = new Projection();
+        private double angle = 0;
+
+        ProjectionPass(int size) {
+            simulation = tank(size);
+        }
+
+        @Override
+        public long run() {
+            angle += 0.01;
+            camera.setAngle(angle);
+            simulation.getFish().project(camera, projection);
+            return Double.doubleToRawLongBits(projection.getDepth(0));
+        }
+
+        @Override
+        public void close() {
+            simulation.shutdown();
+        }
+    }
+
+    /** Projection, draw list fill and depth sort for every fish. */
+    private static class DepthSort implements Workload {
+        private final Simulation simulation;
+        private final Camera camera = new Camera(WIDTH, HEIGHT);
+        private final Projection projection = new Projection();
+        private final DrawList drawList = new DrawList();
+        private double angle = 0;
+
+        DepthSort(int size) {
+            simulation = tank(size);
+        }
+
+        @Override
+        public long run() {
+            FishPopulation fish = simulation.getFish();
+            angle += 0.01;
+            camera.setAngle(angle);
+            fish.project(camera, projection);
+            drawList.clear();
+            for (int i = 0; i < fish.size(); i++)
+                drawList.add(projection.getDepth(i), DrawList.FISH, i);
+            drawList.sort();
+            return drawList.index(0);
+        }
+
+        @Override
+        public void close() {
+            simulation.shutdown();
+        }
+    }
+}
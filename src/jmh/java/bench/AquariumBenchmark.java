@@ -0,0 +1,61 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times each simulation and render-prep hot path over the whole population,
+ * so the score is the cost per tick (or per frame) at the given size.
+ *
+ * The forks run with the Vector API module so the vector integration kernel
+ * is measured; add {@code -jvmArgsAppend -Daquarium.vector=false} to the JMH
+ * arguments to compare against the scalar one. The {@code integration} path
+ * times the kernels alone; in the other paths they are a small share of the
+ * work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class AquariumBenchmark {
+    @Param({ "fishUpdate", "schooling", "foodAssignment", "particleUpdate", "depthSort", "projection",
+            "integration" })
+    public String path;
+
+    @Param({ "50", "1000", "10000", "100000" })
+    public int size;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        WorkloadFactory factory = (WorkloadFactory) Class.forName(WorkloadFactory.IMPLEMENTATION)
+                .getDeclaredConstructor().newInstance();
+        workload = factory.create(path, size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        workload.close();
+    }
+
+    @Benchmark
+    public long run() {
+        return workload.run();
+    }
+}
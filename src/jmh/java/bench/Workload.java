@@ -0,0 +1,16 @@
+package bench;
+
+/**
+ * One hot path prepared for a given population size.
+ *
+ * Implementations live in the default package next to the code they
+ * exercise, which a packaged benchmark class cannot reference directly; see
+ * {@link WorkloadFactory}.
+ */
+public interface Workload {
+    /** Runs the hot path once over the whole population. */
+    long run();
+
+    default void close() {
+    }
+}
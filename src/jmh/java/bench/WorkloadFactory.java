@@ -0,0 +1,11 @@
+package bench;
+
+/**
+ * Creates {@link Workload}s by name. Implemented by {@code BenchmarkWorkloads}
+ * in the default package and loaded reflectively once per trial.
+ */
+public interface WorkloadFactory {
+    String IMPLEMENTATION = "BenchmarkWorkloads";
+
+    Workload create(String name, int size);
+}
@@ -4,15 +4,28 @@ import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.input.KeyCode;
 import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
 import javafx.stage.Stage;
 
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.Clip;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -23,152 +36,168 @@ public class AquariumApp extends Application {
 
     private static final int WIDTH = 1024;
     private static final int HEIGHT = 600;
-
-    private double cameraAngle = 0;
-    private double targetCameraAngle = 0;
+    private static final int DEFAULT_FISH_COUNT = 50;
+    private static final int DEFAULT_PARTICLE_CAPACITY = 2048;
+    private static final int SOUND_VOICES = 8;
+    private static final int SPLAT_PARTICLE_THRESHOLD = 4096; // Above this the software rasteriser is the default
+    private static final int DEFAULT_TARGET_FPS = 60;
+    private static final String ASSET_CACHE = "aquarium_assets.cache";
+    private static final String ATLAS_ENTRY = "fish atlas";
+    private static final String TANK_FILE = "aquarium_tank.bin";
+    private static final int DEFAULT_SAVE_INTERVAL = 30; // Seconds between background tank saves
 
     private Image backgroundFull; // Unified background
-
-    private List<Fish> fishes = new ArrayList<>();
-    private List<Food> foodList = new ArrayList<>();
-    private List<Particle> particles = new ArrayList<>();
+    private SpriteAtlas fishAtlas; // Null until the cache or the first sprite has loaded; fish are skipped until then
+
+    private Simulation simulation;
+    private SnapshotExchange snapshots;
+    private SimulationThread simulationThread;
+    private TankSaver tankSaver; // Null when the tank is not saved
+    private InputRecorder inputRecorder; // Null unless --record is given
+    private boolean replaying = false; // Input comes from a --replay log
+
+    private final DrawList drawList = new DrawList();
+    private final Camera camera = new Camera(WIDTH, HEIGHT);
+    private final Projection fishProjection = new Projection();
+    private final Projection foodProjection = new Projection();
+    private final Projection particleProjection = new Projection();
+    private int[] particleRun;
+    private ParticleRasterizer particleRasterizer; // Null when particles are drawn with fillOval
+    private FishLod fishLod;
+    private Canvas entityCanvas;
+    private double renderScale = 1.0; // Entity layer resolution relative to the window
+    private int cullCandidates = 0; // Entities tested for the draw list in the last frame
+
+    private Recording recording;
+
+    private final Font instructionFont = Font.font("Arial", FontWeight.BOLD, 12); // Needs the toolkit, so not static
+    private GraphicsContext backgroundGc;
+    private GraphicsContext uiGc;
+    private boolean uiCinematicMode = false; // What the UI layer currently shows
+
+    private final FrameStats frameStats = new FrameStats();
+    private boolean showStats = false;
+
+    private QualityGovernor governor; // Null when quality is fixed
+    private double baseEmission;
+    private double baseLodMid, baseLodFar;
+
+    private final AssetLoader assetLoader = new AssetLoader(Runtime.getRuntime().availableProcessors());
+    private final AudioEngine audio = new AudioEngine(SOUND_VOICES);
+    private int dropSound = -1;
 
     // Input state
-    private boolean leftPressed = false;
-    private boolean rightPressed = false;
     private double lastMouseX = 0;
 
-    // Cinematic Camera State
-    private boolean cinematicMode = false;
-    private double bezierTime = 0;
-    private double camStart = 0;
-    private double camEnd = 0;
-
     @Override
     public void start(Stage primaryStage) {
+        startRecording(getParameters().getNamed().get("jfr"));
+
+        // Layers: static background, entities redrawn every frame, static UI
         StackPane root = new StackPane();
-        Canvas canvas = new Canvas(WIDTH, HEIGHT);
-        GraphicsContext gc = canvas.getGraphicsContext2D();
-        root.getChildren().add(canvas);
+        Canvas backgroundCanvas = new Canvas(WIDTH, HEIGHT);
+        backgroundGc = backgroundCanvas.getGraphicsContext2D();
+        entityCanvas = new Canvas(WIDTH, HEIGHT);
+        Canvas uiCanvas = new Canvas(WIDTH, HEIGHT);
+        GraphicsContext gc = entityCanvas.getGraphicsContext2D();
+        uiGc = uiCanvas.getGraphicsContext2D();
+        root.getChildren().addAll(backgroundCanvas, entityCanvas, uiCanvas);
 
         Scene scene = new Scene(root, WIDTH, HEIGHT);
 
         // Input Handling
         scene.setOnKeyPressed(e -> {
             if (e.getCode() == KeyCode.LEFT)
-                leftPressed = true;
+                simulation.post(Simulation.Command.left(true));
             if (e.getCode() == KeyCode.RIGHT)
-                rightPressed = true;
-            if (e.getCode() == KeyCode.C) {
-                cinematicMode = !cinematicMode;
-                bezierTime = 0; // Reset animation
-                camStart = cameraAngle;
-                camEnd = cameraAngle + Math.PI; // Spin 180
-                System.out.println("Cinematic Mode: " + cinematicMode);
-            }
+                simulation.post(Simulation.Command.right(true));
+            if (e.getCode() == KeyCode.C)
+                simulation.post(Simulation.Command.toggleCinematic());
+            if (e.getCode() == KeyCode.F)
+                showStats = !showStats;
+            if (e.getCode() == KeyCode.E)
+                frameStats.exportCsv(Paths.get("frame_times_"
+                        + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".csv"));
         });
 
         scene.setOnKeyReleased(e -> {
             if (e.getCode() == KeyCode.LEFT)
-                leftPressed = false;
+                simulation.post(Simulation.Command.left(false));
             if (e.getCode() == KeyCode.RIGHT)
-                rightPressed = false;
+                simulation.post(Simulation.Command.right(false));
         });
 
         // Mouse Click Handling
-        scene.setOnMousePressed(e ->
-
-        {
+        scene.setOnMousePressed(e -> {
             if (e.isSecondaryButtonDown()) {
                 lastMouseX = e.getX();
                 return;
             }
 
-            // Spawn food at the center plane of the aquarium (rz = 0)
-            // We need to un-project the mouse coordinates into 3D world space
-
-            double focalLength = 400;
-            double centerX = WIDTH / 2.0;
-            double centerY = HEIGHT / 2.0;
-            double centerZ = 400.0;
-
-            // 1. Calculate scale at the center plane (rz = 0, so newZ = centerZ)
-            double targetZ = centerZ;
-            double scale = focalLength / (focalLength + targetZ);
-
-            // 2. Un-project screen X/Y to rotated local coordinates (rx, ry)
-            // drawX = centerX + rx * scale => rx = (drawX - centerX) / scale
-            double rx = (e.getX() - centerX) / scale;
-            double ry = (e.getY() - centerY) / scale; // ry is just dy since we don't rotate Y
-
-            // 3. We assume rz = 0 (spawning on the pivot plane)
-            double rz = 0;
-
-            // 4. Inverse Rotate (rx, rz) -> (dx, dz)
-            // The forward rotation was:
-            // rx = dx * cos - dz * sin
-            // rz = dx * sin + dz * cos
-            //
-            // Inverse rotation (rotate by -angle):
-            // dx = rx * cos(-a) - rz * sin(-a) = rx * cos + rz * sin
-            // dz = rx * sin(-a) + rz * cos(-a) = -rx * sin + rz * cos
-
-            double cos = Math.cos(cameraAngle);
-            double sin = Math.sin(cameraAngle);
-
-            double dx = rx * cos + rz * sin;
-            double dz = -rx * sin + rz * cos;
-
-            // 5. World Coordinates
-            double worldX = centerX + dx;
-            double worldY = centerY + ry;
-            double worldZ = centerZ + dz;
-
-            foodList.add(new Food(worldX, worldY, worldZ));
-            playSound("drop.wav", -10.0f);
-
-            // Excite nearest fish
-            Fish nearest = null;
-            double minD = Double.MAX_VALUE;
-            for (Fish f : fishes) {
-                double dist = f.distanceTo(worldX, worldY, worldZ);
-                if (dist < minD) {
-                    minD = dist;
-                    nearest = f;
-                }
-            }
-            if (nearest != null)
-                nearest.excite();
+            simulation.post(Simulation.Command.dropFood(e.getX(), e.getY()));
+            audio.play(dropSound, -10.0f);
         });
 
         scene.setOnMouseDragged(e -> {
             if (e.isSecondaryButtonDown()) {
-                double dx = e.getX() - lastMouseX;
-                targetCameraAngle -= dx * 0.005;
+                simulation.post(Simulation.Command.rotate(e.getX() - lastMouseX));
                 lastMouseX = e.getX();
             }
         });
 
+        int particleCapacity = intParameter("particles", DEFAULT_PARTICLE_CAPACITY);
+        int workers = intParameter("workers", Runtime.getRuntime().availableProcessors());
+        IntegrationKernel.useVector(intParameter("vector", 1) != 0);
+        System.out.println("Integration kernel: " + IntegrationKernel.get().getName());
+        simulation = createSimulation(particleCapacity, workers);
+        baseEmission = doubleParameter("emission", 1.0);
+        simulation.post(Simulation.Command.emission(baseEmission));
+        snapshots = new SnapshotExchange(simulation.getParticleCapacity());
+        particleRun = new int[simulation.getParticleCapacity()];
+        fishLod = new FishLod(intParameter("lod-mid", (int) FishLod.DEFAULT_MID_WIDTH),
+                intParameter("lod-far", (int) FishLod.DEFAULT_FAR_WIDTH));
+        baseLodMid = fishLod.getMidWidth();
+        baseLodFar = fishLod.getFarWidth();
+        if (intParameter("governor", 1) != 0)
+            governor = new QualityGovernor(intParameter("target-fps", DEFAULT_TARGET_FPS));
+        if (intParameter("splat", particleCapacity > SPLAT_PARTICLE_THRESHOLD ? 1 : 0) != 0)
+            particleRasterizer = new ParticleRasterizer(WIDTH, HEIGHT, workers);
+        drawBackground(backgroundGc);
         loadAssets();
+        drawUi(false);
+
+        int saveInterval = intParameter("save-interval", DEFAULT_SAVE_INTERVAL);
+        if (saveInterval > 0 && !replaying) { // A replay must not overwrite the saved tank
+            tankSaver = new TankSaver(Paths.get(TANK_FILE), simulation.getParticleCapacity());
+            simulation.setSaver(tankSaver);
+        }
 
-        playOceanSound();
+        simulationThread = new SimulationThread(simulation, snapshots);
+        simulationThread.start();
+        if (tankSaver != null)
+            tankSaver.start(simulation, saveInterval);
 
-        // Game Loop
+        // Render Loop: draws the newest simulation snapshot, never waits for a tick
         new AnimationTimer() {
-            long lastTime = 0;
+            private long lastFrame = 0;
 
             @Override
             public void handle(long now) {
-                if (lastTime == 0) {
-                    lastTime = now;
-                    return;
-                }
-
-                double elapsedSeconds = (now - lastTime) / 1_000_000_000.0;
-                lastTime = now;
-
-                update(elapsedSeconds);
-                render(gc);
+                long frameStart = System.nanoTime();
+                FrameSnapshot frame = snapshots.acquire();
+                double alpha = (frameStart - frame.getPublishedNanos()) / (double) simulationThread.getTickNanos();
+                render(gc, frame, Math.max(0, Math.min(1, alpha)));
+                long renderNanos = System.nanoTime() - frameStart;
+
+                frameStats.recordFrame(frameStart, lastFrame == 0 ? 0 : frameStart - lastFrame, renderNanos,
+                        frame.getTick(), frame.getStepNanos(), frame.getFish().size(), frame.getFoodCount(),
+                        frame.getParticles().size(), cullCandidates, drawList.size());
+                if (governor != null && governor.recordFrame(lastFrame == 0 ? 0 : frameStart - lastFrame,
+                        renderNanos))
+                    applyQuality();
+                lastFrame = frameStart;
+                if (showStats)
+                    frameStats.drawOverlay(gc, WIDTH);
             }
         }.start();
 
@@ -177,52 +206,290 @@ public class AquariumApp extends Application {
         primaryStage.show();
     }
 
+    // Loads every asset off the FX thread; frames are drawn from the start.
+    // Images come from the mapped asset cache when it matches the source
+    // files, otherwise they are decoded and the cache is rewritten.
     private void loadAssets() {
+        // Unified background, or the older single image
+        String background = new File("aquarium_full_background.png").exists() ? "aquarium_full_background.png"
+                : "background.jpg";
+
+        // Fish sprites; each type's share of the fish is drawn up front
+        List<String> fishFiles = findFishFiles();
+        // Fish come from the last run's tank if there is one, otherwise at random. Recorded and replayed
+        // sessions always start from an empty tank, so the seed and the log alone reproduce them.
+        int[] fishPerType = new int[fishFiles.size()];
+        boolean restored = !replaying && inputRecorder == null && intParameter("restore", 1) != 0
+                && restoreTank(fishFiles.size());
+        if (!restored && !fishFiles.isEmpty()) {
+            SeededRandom random = new SeededRandom(simulation.getSeed());
+            for (int i = intParameter("fish", DEFAULT_FISH_COUNT); i > 0; i--)
+                fishPerType[random.nextInt(fishFiles.size())]++;
+        }
+
+        if (intParameter("asset-cache", 1) == 0) {
+            decodeImages(background, fishFiles, fishPerType, null);
+        } else {
+            List<Path> sources = new ArrayList<>();
+            sources.add(Paths.get(background));
+            for (String file : fishFiles)
+                sources.add(Paths.get(file));
+            assetLoader.submit(() -> {
+                try {
+                    return AssetCache.hash(sources);
+                } catch (IOException e) {
+                    System.err.println("Cannot hash assets: " + e.getMessage());
+                    return null;
+                }
+            }, hash -> {
+                AssetCache cache = hash == null ? null : AssetCache.open(Paths.get(ASSET_CACHE), hash);
+                if (cache == null || !useCache(cache, background, fishFiles.size(), fishPerType))
+                    decodeImages(background, fishFiles, fishPerType, hash);
+            });
+        }
+
+        // Sound effects, then the mixer once they are decoded
+        assetLoader.submit(() -> {
+            int eatSound = audio.load("eat.wav");
+            int drop = audio.load("drop.wav");
+            audio.start();
+            simulation.setEatSound(audio, eatSound);
+            return drop;
+        }, drop -> {
+            dropSound = drop == null ? -1 : drop;
+            assetLoaded();
+        });
+        assetLoader.submit(() -> {
+            playOceanSound();
+            return null;
+        }, ignored -> assetLoaded());
+    }
+
+    // Fish sprites (1-13) present on disk, in sprite type order
+    private static List<String> findFishFiles() {
+        List<String> fishFiles = new ArrayList<>();
+        for (int i = 1; i <= 13; i++) {
+            if (new File("fish_type" + i + ".png").exists())
+                fishFiles.add("fish_type" + i + ".png");
+        }
+        return fishFiles;
+    }
+
+    // A simulation seeded from --seed, or set up to replay --replay, optionally logging input to --record
+    private Simulation createSimulation(int particleCapacity, int workers) {
+        String replayPath = getParameters().getNamed().get("replay");
+        if (replayPath != null) {
+            try {
+                InputReplay replay = InputReplay.read(Paths.get(replayPath), findFishFiles().size());
+                System.out.println("Replaying " + replay.getCommandCount() + " commands from " + replayPath
+                        + " (seed " + replay.getSeed() + ")");
+                replaying = true;
+                return replay.createSimulation(workers);
+            } catch (IOException e) {
+                System.err.println("Could not replay " + replayPath + ": " + e.getMessage());
+            }
+        }
+
+        long seed = longParameter("seed", System.nanoTime());
+        System.out.println("Simulation seed: " + seed);
+        Simulation created = new Simulation(WIDTH, HEIGHT, particleCapacity, workers, seed);
+        String recordPath = getParameters().getNamed().get("record");
+        if (recordPath != null) {
+            try {
+                inputRecorder = new InputRecorder(Paths.get(recordPath), seed, WIDTH, HEIGHT, particleCapacity);
+                created.setRecorder(inputRecorder);
+                System.out.println("Recording input to " + Paths.get(recordPath).toAbsolutePath());
+            } catch (IOException e) {
+                System.err.println("Could not record input: " + e.getMessage());
+            }
+        }
+        return created;
+    }
+
+    // Loads the tank saved by the last run, if its fish fit the sprites on disk
+    private boolean restoreTank(int fishTypes) {
+        Path file = Paths.get(TANK_FILE);
+        if (!Files.exists(file))
+            return false;
         try {
-            // Load Unified Background
-            backgroundFull = loadImage("aquarium_full_background.png");
-            if (backgroundFull == null)
-                backgroundFull = loadImage("background.jpg");
-
-            // Load Fish Images (1-13)
-            List<Image> fishImageList = new ArrayList<>();
-            for (int i = 1; i <= 13; i++) {
-                Image fishImg = loadImage("fish_type" + i + ".png");
-                if (fishImg != null)
-                    fishImageList.add(fishImg);
+            TankSnapshot snapshot = TankSnapshot.read(file, simulation.getParticleCapacity());
+            if (snapshot.getMaxSpriteType() >= fishTypes) {
+                System.err.println("Saved tank uses sprites that are missing; starting a new one");
+                return false;
             }
-            Image[] fishImages = fishImageList.toArray(new Image[0]);
+            simulation.restoreFrom(snapshot);
+            System.out.println("Restored tank: " + snapshot.getFishCount() + " fish at tick " + snapshot.getTick());
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not restore tank: " + e.getMessage());
+            return false;
+        }
+    }
 
-            // Spawn Fish
-            if (fishImages.length > 0) {
-                for (int i = 0; i < 50; i++) {
-                    Image randomFishImg = fishImages[(int) (Math.random() * fishImages.length)];
-                    if (randomFishImg == null)
-                        continue;
+    // Takes the background and finished atlas straight from the cache mapping
+    private boolean useCache(AssetCache cache, String background, int fishTypes, int[] fishPerType) {
+        WritableImage atlasImage = cache.getImage(ATLAS_ENTRY);
+        if (atlasImage == null)
+            return false;
+        try {
+            SpriteAtlas atlas = SpriteAtlas.restore(atlasImage, cache.getAtlasLayout());
+            if (atlas.getTypeCount() != fishTypes)
+                return false;
+            fishAtlas = atlas;
+        } catch (IOException e) {
+            System.err.println("Ignoring asset cache: " + e.getMessage());
+            return false;
+        }
 
-                    // Spread wider to account for 3D perspective narrowing
-                    double startX = Math.random() * (WIDTH * 3) - WIDTH;
-                    double startY = Math.random() * HEIGHT;
-                    double startZ = Math.random() * 1000 - 200; // More depth variation
+        backgroundFull = cache.getImage(background);
+        drawBackground(backgroundGc);
+        for (int t = 0; t < fishTypes; t++) {
+            if (fishAtlas.isReady(t)) {
+                simulation.post(Simulation.Command.spawnFish(t, fishAtlas.getSourceWidth(t),
+                        fishAtlas.getSourceHeight(t), fishPerType[t]));
+            }
+        }
+        drawUi(uiCinematicMode);
+        return true;
+    }
 
-                    double speed = (Math.random() * 0.8 + 0.4);
-                    double scale = 0.1 + Math.random() * 0.15;
+    // Decodes images on the loader pool; each fish type swims in as soon as its
+    // sprite is in the atlas. Writes the cache afterwards if hash is given.
+    private void decodeImages(String background, List<String> fishFiles, int[] fishPerType, byte[] hash) {
+        int[] remaining = { fishFiles.size() + 1 };
+        Runnable imageDone = () -> {
+            assetLoaded();
+            if (--remaining[0] == 0 && hash != null)
+                saveCache(hash, background);
+        };
 
-                    fishes.add(new Fish(randomFishImg, startX, startY, startZ, speed, scale));
+        assetLoader.loadImage(background, image -> image, image -> {
+            backgroundFull = image;
+            drawBackground(backgroundGc);
+            imageDone.run();
+        });
+
+        fishAtlas = new SpriteAtlas(fishFiles.size());
+        for (int t = 0; t < fishFiles.size(); t++) {
+            int type = t;
+            assetLoader.loadImage(fishFiles.get(t), SpriteAtlas::prepare, sprite -> {
+                if (sprite != null) {
+                    fishAtlas.put(type, sprite);
+                    simulation.post(Simulation.Command.spawnFish(type, sprite.getSourceWidth(),
+                            sprite.getSourceHeight(), fishPerType[type]));
                 }
+                imageDone.run();
+            });
+        }
+    }
+
+    // Copies the decoded pixels on the FX thread and writes them out on the pool
+    private void saveCache(byte[] hash, String background) {
+        AssetCache.Writer writer = new AssetCache.Writer(hash).atlasLayout(fishAtlas.getLayout());
+        Image atlas = fishAtlas.getImage();
+        writer.image(ATLAS_ENTRY, (int) atlas.getWidth(), (int) atlas.getHeight(), fishAtlas.getPixels());
+        if (backgroundFull != null) {
+            int w = (int) backgroundFull.getWidth();
+            int h = (int) backgroundFull.getHeight();
+            int[] pixels = new int[w * h];
+            backgroundFull.getPixelReader().getPixels(0, 0, w, h, PixelFormat.getIntArgbPreInstance(), pixels, 0,
+                    w);
+            writer.image(background, w, h, pixels);
+        }
+        assetLoader.run(() -> {
+            try {
+                writer.write(Paths.get(ASSET_CACHE));
+            } catch (IOException e) {
+                System.err.println("Could not write asset cache: " + e.getMessage());
             }
+        });
+    }
+
+    // FX thread: refreshes the loading indicator after each asset arrives
+    private void assetLoaded() {
+        drawUi(uiCinematicMode);
+    }
+
+    // Pushes the governor's current level to the simulation, LOD and entity layer
+    private void applyQuality() {
+        AquariumEvents.QualityChange event = new AquariumEvents.QualityChange();
+        simulation.post(Simulation.Command.emission(baseEmission * governor.getEmissionScale()));
+        fishLod.setThresholds(baseLodMid * governor.getLodScale(), baseLodFar * governor.getLodScale());
+        setRenderScale(governor.getRenderScale());
+        System.out.println("Quality level " + governor.getLevel() + "/" + QualityGovernor.MAX_LEVEL);
+
+        event.level = governor.getLevel();
+        event.emissionScale = governor.getEmissionScale();
+        event.lodScale = governor.getLodScale();
+        event.renderScale = governor.getRenderScale();
+        event.commit();
+    }
+
+    // Resizes the entity canvas backing store and stretches it back over the window
+    private void setRenderScale(double scale) {
+        if (scale == renderScale)
+            return;
+        renderScale = scale;
+        entityCanvas.setWidth(Math.round(WIDTH * scale));
+        entityCanvas.setHeight(Math.round(HEIGHT * scale));
+        entityCanvas.setScaleX(1 / scale);
+        entityCanvas.setScaleY(1 / scale);
+    }
 
+    // Starts a flight recording that is written to path when the app exits
+    private void startRecording(String path) {
+        if (path == null)
+            return;
+        try {
+            recording = new Recording(Configuration.getConfiguration("profile"));
+            recording.setName("Aquarium");
+            recording.setDestination(Paths.get(path));
+            recording.start();
+            System.out.println("Flight recording to " + Paths.get(path).toAbsolutePath());
         } catch (Exception e) {
-            System.err.println("Error loading assets: " + e.getMessage());
+            System.err.println("Could not start flight recording: " + e.getMessage());
+            recording = null;
+        }
+    }
+
+    // Reads a named launch parameter such as --fish=2000
+    private int intParameter(String name, int defaultValue) {
+        String value = getParameters().getNamed().get(name);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for --" + name + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    private long longParameter(String name, long defaultValue) {
+        String value = getParameters().getNamed().get(name);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for --" + name + ": " + value);
+            return defaultValue;
         }
     }
 
-    private Image loadImage(String name) {
-        File file = new File(name);
-        if (file.exists()) {
-            return new Image(file.toURI().toString());
+    private double doubleParameter(String name, double defaultValue) {
+        String value = getParameters().getNamed().get(name);
+        if (value == null)
+            return defaultValue;
+        try {
+            double parsed = Double.parseDouble(value.trim());
+            if (Double.isFinite(parsed))
+                return parsed;
+        } catch (NumberFormatException e) {
+            // Reported below
         }
-        return null;
+        System.err.println("Invalid value for --" + name + ": " + value);
+        return defaultValue;
     }
 
     private void playOceanSound() {
@@ -243,173 +510,157 @@ public class AquariumApp extends Application {
         }
     }
 
-    private void playSound(String filename, float volumeReduction) {
-        try {
-            File soundFile = new File(filename);
-            if (soundFile.exists()) {
-                AudioInputStream audioIn = AudioSystem.getAudioInputStream(soundFile);
-                Clip clip = AudioSystem.getClip();
-                clip.open(audioIn);
-                javax.sound.sampled.FloatControl gainControl = (javax.sound.sampled.FloatControl) clip
-                        .getControl(javax.sound.sampled.FloatControl.Type.MASTER_GAIN);
-                gainControl.setValue(volumeReduction);
-                clip.start();
-            }
-        } catch (Exception e) {
-            // Ignore errors
+    @Override
+    public void stop() {
+        assetLoader.shutdown();
+        if (simulationThread != null)
+            simulationThread.stop();
+        if (inputRecorder != null)
+            inputRecorder.close();
+        if (tankSaver != null)
+            tankSaver.stop(simulation);
+        if (simulation != null)
+            simulation.shutdown();
+        if (particleRasterizer != null)
+            particleRasterizer.shutdown();
+        audio.stop();
+        System.out.println("Sound effects dropped: " + audio.getDroppedCount() + ", voices stolen: "
+                + audio.getStolenCount());
+        if (recording != null) {
+            recording.stop(); // Writes the destination file
+            recording.close();
         }
     }
 
-    // Cubic Bezier Interpolation
-    private double cubicBezier(double t, double p0, double p1, double p2, double p3) {
-        double u = 1 - t;
-        double tt = t * t;
-        double uu = u * u;
-        double uuu = uu * u;
-        double ttt = tt * t;
-        return (uuu * p0) + (3 * uu * t * p1) + (3 * u * tt * p2) + (ttt * p3);
-    }
-
-    private void update(double dt) {
-        // Camera Logic
-        if (cinematicMode) {
-            bezierTime += dt * 0.1; // Slower pan
-            if (bezierTime > 1.0) {
-                bezierTime = 0;
-                camStart = camEnd;
-                camEnd = camEnd + Math.PI; // Keep spinning
+    private void render(GraphicsContext gc, FrameSnapshot frame, double alpha) {
+        AquariumEvents.RenderPhase phase = new AquariumEvents.RenderPhase();
+        phase.begin();
+
+        // 1. Clear the entity layer; the background layer shows through. Drawing
+        // stays in window coordinates whatever the layer's resolution
+        gc.setTransform(renderScale, 0, 0, renderScale, 0, 0);
+        gc.clearRect(0, 0, WIDTH, HEIGHT);
+        phase = nextPhase(phase, "background", frame);
+
+        // 2. Project everything once for this frame, interpolated between ticks
+        FishPopulation fishes = frame.getFish();
+        ParticleSystem particles = frame.getParticles();
+        camera.setAngle(frame.getCameraAngle(alpha));
+        fishes.project(camera, alpha, fishProjection);
+        particles.project(camera, alpha, particleProjection);
+        frame.projectFood(camera, alpha, foodProjection);
+        phase = nextPhase(phase, "project", frame);
+
+        // 3. Z-Sorting Render Loop, only for entities whose projected bounds reach the screen
+        drawList.clear();
+        for (int i = 0; i < fishes.size(); i++) {
+            if (fishes.isInView(i, fishProjection, WIDTH, HEIGHT))
+                drawList.add(fishProjection.getDepth(i), DrawList.FISH, i);
+        }
+        for (int i = 0; i < frame.getFoodCount(); i++) {
+            if (Food.isInView(foodProjection, i, WIDTH, HEIGHT))
+                drawList.add(foodProjection.getDepth(i), DrawList.FOOD, i);
+        }
+        cullCandidates = fishes.size() + frame.getFoodCount();
+        if (particleRasterizer == null) {
+            for (int i = 0; i < particles.size(); i++) {
+                if (particles.isInView(i, particleProjection, WIDTH, HEIGHT))
+                    drawList.add(particleProjection.getDepth(i), DrawList.PARTICLE, i);
             }
-            double p0 = camStart;
-            double p1 = camStart + (camEnd - camStart) * 0.2;
-            double p2 = camEnd - (camEnd - camStart) * 0.2;
-            double p3 = camEnd;
-
-            targetCameraAngle = cubicBezier(bezierTime, p0, p1, p2, p3);
-            cameraAngle = targetCameraAngle;
-
-        } else {
-            // Manual Control
-            if (leftPressed)
-                targetCameraAngle -= 2.0 * dt;
-            if (rightPressed)
-                targetCameraAngle += 2.0 * dt;
-            cameraAngle += (targetCameraAngle - cameraAngle) * 5 * dt;
+            cullCandidates += particles.size();
         }
 
-        // Update Food
-        foodList.removeIf(food -> !food.isActive());
-        for (Food food : foodList) {
-            food.update();
-        }
+        // Sort: Far (high Z) to Near (low Z)
+        drawList.sort();
+        phase = nextPhase(phase, "sort", frame);
 
-        // Update Particles
-        if (Math.random() < 0.2) {
-            particles.add(new Particle(Math.random() * WIDTH, HEIGHT + 50, Math.random() * 500, Particle.Type.BUBBLE));
-        }
-        if (Math.random() < 0.5) {
-            particles.add(new Particle(Math.random() * WIDTH, Math.random() * HEIGHT, Math.random() * 500,
-                    Particle.Type.PLANKTON));
-        }
-        particles.removeIf(p -> !p.update(dt));
-
-        // Assign Food
-        java.util.Map<Fish, Food> assignments = new java.util.HashMap<>();
-        for (Food food : foodList) {
-            Fish closest = null;
-            double minD = Double.MAX_VALUE;
-            for (Fish f : fishes) {
-                double dist = f.distanceTo(food.getX(), food.getY(), food.getZ());
-                if (dist < minD) {
-                    minD = dist;
-                    closest = f;
-                }
-            }
-            if (closest != null) {
-                if (assignments.containsKey(closest)) {
-                    Food current = assignments.get(closest);
-                    if (minD < closest.distanceTo(current.getX(), current.getY(), current.getZ())) {
-                        assignments.put(closest, food);
-                    }
-                } else {
-                    assignments.put(closest, food);
-                }
-            }
+        // Dense particle fields are splatted into two images around the pivot depth
+        if (particleRasterizer != null) {
+            particleRasterizer.render(particles, particleProjection, camera.getCenterZ());
+            gc.drawImage(particleRasterizer.getFarImage(), 0, 0);
         }
 
-        // Update Fish
-        for (Fish fish : fishes) {
-            Food target = assignments.get(fish);
-            boolean ate = fish.update(dt, WIDTH, target);
-            if (ate) {
-                playSound("eat.wav", -10.0f);
-                for (int i = 0; i < 5; i++) {
-                    particles.add(new Particle(fish.getX(), fish.getY(), fish.getZ(), Particle.Type.CRUMB));
-                }
+        for (int n = 0; n < drawList.size(); n++) {
+            int i = drawList.index(n);
+            switch (drawList.tag(n)) {
+                case DrawList.FISH:
+                    fishes.draw(gc, i, fishAtlas, fishProjection, fishLod);
+                    break;
+                case DrawList.FOOD:
+                    Food.draw(gc, foodProjection, i);
+                    break;
+                case DrawList.PARTICLE:
+                    n = drawParticleRun(gc, particles, n);
+                    break;
             }
         }
+        if (particleRasterizer != null)
+            gc.drawImage(particleRasterizer.getNearImage(), 0, 0);
+        phase = nextPhase(phase, "draw", frame);
+
+        // UI Overlay only changes with the camera mode
+        if (frame.isCinematicMode() != uiCinematicMode)
+            drawUi(frame.isCinematicMode());
+        endPhase(phase, "ui", frame);
     }
 
-    private void render(GraphicsContext gc) {
-        // Clear Screen
+    // Draws the run of particles starting at draw list entry n in one batch and
+    // returns the last entry of the run. Particles don't occlude each other, so
+    // only their order relative to fish and food has to be kept.
+    private int drawParticleRun(GraphicsContext gc, ParticleSystem particles, int n) {
+        int run = 0;
+        while (n < drawList.size() && drawList.tag(n) == DrawList.PARTICLE)
+            particleRun[run++] = drawList.index(n++);
+        particles.drawRun(gc, particleRun, run, particleProjection);
+        return n - 1;
+    }
+
+    // Drawn once into the bottom layer
+    private void drawBackground(GraphicsContext gc) {
         gc.setFill(Color.BLACK);
         gc.fillRect(0, 0, WIDTH, HEIGHT);
 
-        // 1. Draw Unified Background
         // Static background to simulate a fixed tank while contents rotate
         if (backgroundFull != null) {
             gc.drawImage(backgroundFull, 0, 0, WIDTH, HEIGHT);
         }
+    }
 
-        // 2. Z-Sorting Render Loop
-        class RenderItem {
-            Object obj;
-            double z;
-
-            RenderItem(Object o, double z) {
-                this.obj = o;
-                this.z = z;
-            }
+    // Redraws the top layer; called at startup, while assets load and when cinematic mode toggles
+    private void drawUi(boolean cinematicMode) {
+        uiGc.clearRect(0, 0, WIDTH, HEIGHT);
+        uiGc.setFont(instructionFont);
+        if (cinematicMode) {
+            uiGc.setFill(Color.WHITE);
+            uiGc.fillText("CINEMATIC MODE", 20, 30);
         }
-
-        List<RenderItem> items = new ArrayList<>();
-        double centerX = 1024 / 2.0;
-        double centerZ = 400.0;
-        double cos = Math.cos(cameraAngle);
-        double sin = Math.sin(cameraAngle);
-
-        // Helper to compute rotated Z
-        java.util.function.Function<Double[], Double> getRotZ = (coords) -> {
-            double dx = coords[0] - centerX;
-            double dz = coords[1] - centerZ;
-            return dx * sin + dz * cos + centerZ;
-        };
-
-        for (Fish f : fishes)
-            items.add(new RenderItem(f, getRotZ.apply(new Double[] { f.getX(), f.getZ() })));
-        for (Food f : foodList)
-            items.add(new RenderItem(f, getRotZ.apply(new Double[] { f.getX(), f.getZ() })));
-        for (Particle p : particles)
-            items.add(new RenderItem(p, getRotZ.apply(new Double[] { p.getX(), p.getZ() })));
-
-        // Sort: Far (high Z) to Near (low Z)
-        items.sort((a, b) -> Double.compare(b.z, a.z));
-
-        for (RenderItem item : items) {
-            if (item.obj instanceof Fish)
-                ((Fish) item.obj).draw(gc, cameraAngle);
-            else if (item.obj instanceof Food)
-                ((Food) item.obj).draw(gc, cameraAngle);
-            else if (item.obj instanceof Particle)
-                ((Particle) item.obj).draw(gc, cameraAngle);
+        drawInstructions(uiGc);
+        if (assetLoader.getPending() > 0) {
+            uiGc.setFill(Color.WHITE);
+            uiGc.fillText("LOADING " + (assetLoader.getSubmitted() - assetLoader.getPending()) + "/"
+                    + assetLoader.getSubmitted(), 20, HEIGHT - 20);
         }
+        uiCinematicMode = cinematicMode;
+    }
 
-        // UI Overlay
-        if (cinematicMode) {
-            gc.setFill(Color.WHITE);
-            gc.fillText("CINEMATIC MODE", 20, 30);
-        }
+    // Commits the running phase event and starts timing the next one
+    private AquariumEvents.RenderPhase nextPhase(AquariumEvents.RenderPhase event, String name, FrameSnapshot frame) {
+        endPhase(event, name, frame);
+        AquariumEvents.RenderPhase next = new AquariumEvents.RenderPhase();
+        next.begin();
+        return next;
+    }
 
-        drawInstructions(gc);
+    private void endPhase(AquariumEvents.RenderPhase event, String name, FrameSnapshot frame) {
+        if (event.shouldCommit()) {
+            event.phase = name;
+            event.tick = frame.getTick();
+            event.fish = frame.getFish().size();
+            event.food = frame.getFoodCount();
+            event.particles = frame.getParticles().size();
+            event.entries = drawList.size();
+        }
+        event.commit();
     }
 
     private void drawInstructions(GraphicsContext gc) {
@@ -435,7 +686,7 @@ public class AquariumApp extends Application {
         // Left Click (Feed)
         drawMouseIcon(gc, x + 30, iconY, true);
         gc.setFill(Color.WHITE);
-        gc.setFont(javafx.scene.text.Font.font("Arial", javafx.scene.text.FontWeight.BOLD, 12));
+        gc.setFont(instructionFont);
         gc.fillText("FEED", x + 55, iconY + 15);
 
         // Separator
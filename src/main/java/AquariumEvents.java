@@ -0,0 +1,138 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for the simulation, render, asset and audio
+ * paths.
+ *
+ * Events are cheap when no recording is running: the JIT removes the
+ * begin/commit pair once it sees the event type is disabled. Start a
+ * recording with {@code --jfr=aquarium.jfr} or the usual
+ * {@code -XX:StartFlightRecording} and open it in JDK Mission Control to line
+ * frame spikes up with GC and I/O.
+ */
+public final class AquariumEvents {
+
+    private AquariumEvents() {
+    }
+
+    @Name("aquarium.Tick")
+    @Label("Simulation Tick")
+    @Category({ "Aquarium", "Simulation" })
+    @Description("One fixed-rate simulation step")
+    @StackTrace(false)
+    public static final class Tick extends Event {
+        @Label("Tick")
+        public long tick;
+
+        @Label("Fish")
+        public int fish;
+
+        @Label("Food")
+        public int food;
+
+        @Label("Particles")
+        public int particles;
+
+        @Label("Food Eaten")
+        public int eaten;
+    }
+
+    @Name("aquarium.RenderPhase")
+    @Label("Render Phase")
+    @Category({ "Aquarium", "Render" })
+    @Description("One phase of drawing a frame: background, project, sort, draw or ui")
+    @StackTrace(false)
+    public static final class RenderPhase extends Event {
+        @Label("Phase")
+        public String phase;
+
+        @Label("Simulation Tick")
+        public long tick;
+
+        @Label("Fish")
+        public int fish;
+
+        @Label("Food")
+        public int food;
+
+        @Label("Particles")
+        public int particles;
+
+        @Label("Draw List Entries")
+        public int entries;
+    }
+
+    @Name("aquarium.AssetLoad")
+    @Label("Asset Load")
+    @Category({ "Aquarium", "Assets" })
+    @Description("Loading of one image or sound file")
+    public static final class AssetLoad extends Event {
+        @Label("File")
+        public String file;
+
+        @Label("Loaded")
+        public boolean loaded;
+
+        @Label("Width")
+        public int width;
+
+        @Label("Height")
+        public int height;
+
+        @Label("Samples")
+        public int samples;
+    }
+
+    @Name("aquarium.PlaySound")
+    @Label("Play Sound")
+    @Category({ "Aquarium", "Audio" })
+    @Description("Request to play a sound effect")
+    @StackTrace(false)
+    public static final class PlaySound extends Event {
+        @Label("Sound")
+        public int sound;
+
+        @Label("Gain (dB)")
+        public float gainDb;
+
+        @Label("Queued")
+        public boolean queued;
+    }
+
+    @Name("aquarium.VoiceSteal")
+    @Label("Voice Steal")
+    @Category({ "Aquarium", "Audio" })
+    @Description("A playing voice was cut short to start a new sound")
+    @StackTrace(false)
+    public static final class VoiceSteal extends Event {
+        @Label("Sound")
+        public int sound;
+
+        @Label("Voices")
+        public int voices;
+    }
+
+    @Name("aquarium.QualityChange")
+    @Label("Quality Change")
+    @Category({ "Aquarium", "Render" })
+    @Description("The quality governor moved to another level")
+    @StackTrace(false)
+    public static final class QualityChange extends Event {
+        @Label("Level")
+        public int level;
+
+        @Label("Emission Scale")
+        public double emissionScale;
+
+        @Label("LOD Scale")
+        public double lodScale;
+
+        @Label("Render Scale")
+        public double renderScale;
+    }
+}
@@ -0,0 +1,244 @@
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decoded images stored in one file that later launches memory-map instead of
+ * decoding PNGs again.
+ *
+ * Layout: a header with a magic number, format version, the SHA-256 of every
+ * source file, an opaque layout blob for the sprite atlas and a table of named
+ * images, followed by the pixels of each image as premultiplied BGRA, 64-byte
+ * aligned. Opening the cache maps the file read-only and wraps each image's
+ * slice of the mapping in a {@link PixelBuffer}, so pixels are never copied
+ * onto the Java heap and pages are only read from disk when first drawn.
+ *
+ * A cache whose hash does not match the current sources is ignored and
+ * rewritten after the next full decode.
+ */
+public final class AssetCache {
+    private static final int MAGIC = 0x41514143; // "AQAC"
+    private static final int VERSION = 1;
+    private static final int ALIGNMENT = 64;
+
+    private final MappedByteBuffer data;
+    private final Map<String, int[]> images; // name -> width, height, offset
+    private final byte[] atlasLayout;
+
+    private AssetCache(MappedByteBuffer data, Map<String, int[]> images, byte[] atlasLayout) {
+        this.data = data;
+        this.images = images;
+        this.atlasLayout = atlasLayout;
+    }
+
+    /**
+     * SHA-256 over the names and contents of {@code sources}, in order.
+     * Missing files hash as empty.
+     */
+    public static byte[] hash(List<Path> sources) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        for (Path source : sources) {
+            digest.update(source.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+            if (!Files.exists(source))
+                continue;
+            try (InputStream in = Files.newInputStream(source)) {
+                int read;
+                while ((read = in.read(buffer)) > 0)
+                    digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Maps a cache file.
+     *
+     * @return the cache, or null if it is missing, unreadable, from another
+     *         format version or built from different sources
+     */
+    public static AssetCache open(Path file, byte[] expectedHash) {
+        if (!Files.exists(file))
+            return null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            DataInputStream header = new DataInputStream(new ByteBufferInput(data.duplicate()));
+            if (header.readInt() != MAGIC || header.readInt() != VERSION)
+                return null;
+            byte[] hash = new byte[32];
+            header.readFully(hash);
+            if (!Arrays.equals(hash, expectedHash))
+                return null;
+
+            byte[] layout = new byte[header.readInt()];
+            header.readFully(layout);
+            Map<String, int[]> images = new HashMap<>();
+            int count = header.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = header.readUTF();
+                int width = header.readInt();
+                int height = header.readInt();
+                int offset = header.readInt();
+                if (offset < 0 || (long) offset + (long) width * height * 4 > data.capacity())
+                    return null;
+                images.put(name, new int[] { width, height, offset });
+            }
+            return new AssetCache(data, images, layout);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring asset cache " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * An image backed directly by the mapped file, or null if the cache does
+     * not hold {@code name}. The image is read-only.
+     */
+    public WritableImage getImage(String name) {
+        int[] entry = images.get(name);
+        if (entry == null)
+            return null;
+        ByteBuffer pixels = data.slice(entry[2], entry[0] * entry[1] * 4);
+        return new WritableImage(
+                new PixelBuffer<>(entry[0], entry[1], pixels, PixelFormat.getByteBgraPreInstance()));
+    }
+
+    public byte[] getAtlasLayout() {
+        return atlasLayout;
+    }
+
+    /**
+     * Collects images for a new cache file. Pixels are premultiplied ARGB as
+     * returned by {@code PixelFormat.getIntArgbPreInstance()}.
+     */
+    public static final class Writer {
+        private final byte[] hash;
+        private final List<String> names = new ArrayList<>();
+        private final List<int[]> sizes = new ArrayList<>();
+        private final List<int[]> pixels = new ArrayList<>();
+        private byte[] atlasLayout = new byte[0];
+
+        public Writer(byte[] hash) {
+            this.hash = hash;
+        }
+
+        public Writer image(String name, int width, int height, int[] argbPre) {
+            names.add(name);
+            sizes.add(new int[] { width, height });
+            pixels.add(argbPre);
+            return this;
+        }
+
+        public Writer atlasLayout(byte[] layout) {
+            this.atlasLayout = layout;
+            return this;
+        }
+
+        /**
+         * Writes to a temporary file and moves it over {@code file}, so a
+         * reader never maps a half-written cache.
+         */
+        public void write(Path file) throws IOException {
+            // 1. Header, with offsets from a first pass over the sizes
+            int headerSize = headerBytes(new int[names.size()]).length;
+            int[] offsets = new int[names.size()];
+            long offset = align(headerSize);
+            for (int i = 0; i < names.size(); i++) {
+                offsets[i] = (int) offset;
+                offset = align(offset + (long) sizes.get(i)[0] * sizes.get(i)[1] * 4);
+            }
+            if (offset > Integer.MAX_VALUE)
+                throw new IOException("Asset cache too large");
+            byte[] header = headerBytes(offsets);
+
+            // 2. Pixels as little-endian ints, which is BGRA byte order
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(header));
+                for (int i = 0; i < names.size(); i++) {
+                    int[] argb = pixels.get(i);
+                    ByteBuffer bytes = ByteBuffer.allocate(argb.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+                    bytes.asIntBuffer().put(argb);
+                    channel.position(offsets[i]);
+                    while (bytes.hasRemaining())
+                        channel.write(bytes);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private byte[] headerBytes(int[] offsets) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.write(hash);
+            out.writeInt(atlasLayout.length);
+            out.write(atlasLayout);
+            out.writeInt(names.size());
+            for (int i = 0; i < names.size(); i++) {
+                out.writeUTF(names.get(i));
+                out.writeInt(sizes.get(i)[0]);
+                out.writeInt(sizes.get(i)[1]);
+                out.writeInt(offsets[i]);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private static long align(long position) {
+            return (position + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+        }
+    }
+
+    // Reads the header straight out of the mapping
+    private static final class ByteBufferInput extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining())
+                return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Decodes images and runs other startup I/O on a small pool of background
+ * threads so the window can show its first frame straight away.
+ *
+ * Work is submitted as a decode step that runs on the pool and an optional
+ * finishing step that runs on the FX thread, where it is safe to touch the
+ * scene and the sprite atlas. The loader counts outstanding tasks so the UI
+ * can show a loading state until everything has arrived.
+ */
+public class AssetLoader {
+    private final ExecutorService pool;
+    private final AtomicInteger submitted = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+
+    public AssetLoader(int threads) {
+        AtomicInteger names = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "aquarium-assets-" + names.incrementAndGet());
+            t.setDaemon(true); // Never keeps the JVM alive on exit
+            return t;
+        });
+    }
+
+    /**
+     * Decodes an image on the pool, prepares it with {@code prepare} on the
+     * same thread and hands the result to {@code onReady} on the FX thread.
+     * Missing or undecodable files skip {@code prepare} and deliver null.
+     */
+    public <T> void loadImage(String name, Function<Image, T> prepare, Consumer<T> onReady) {
+        submit(() -> {
+            Image image = decode(name);
+            return image == null ? null : prepare.apply(image);
+        }, onReady);
+    }
+
+    /**
+     * Runs {@code task} on the pool and passes its result to {@code onReady}
+     * on the FX thread. Exceptions are logged and deliver null.
+     */
+    public <T> void submit(Supplier<T> task, Consumer<T> onReady) {
+        submitted.incrementAndGet();
+        CompletableFuture.supplyAsync(task, pool).exceptionally(e -> {
+            System.err.println("Error loading assets: " + e.getMessage());
+            return null;
+        }).thenAccept(result -> Platform.runLater(() -> {
+            completed.incrementAndGet();
+            if (onReady != null)
+                onReady.accept(result);
+        }));
+    }
+
+    /**
+     * Runs {@code task} on the pool without counting it as loading, e.g. to
+     * write files once everything has loaded.
+     */
+    public void run(Runnable task) {
+        pool.execute(task);
+    }
+
+    private static Image decode(String name) {
+        AquariumEvents.AssetLoad event = new AquariumEvents.AssetLoad();
+        event.begin();
+        event.file = name;
+        Image image = null;
+        File file = new File(name);
+        if (file.exists()) {
+            image = new Image(file.toURI().toString()); // Synchronous decode on this pool thread
+            event.loaded = !image.isError();
+            event.width = (int) image.getWidth();
+            event.height = (int) image.getHeight();
+            if (image.isError())
+                image = null;
+        }
+        event.commit();
+        return image;
+    }
+
+    /** Tasks whose FX-thread step has not run yet. */
+    public int getPending() {
+        return submitted.get() - completed.get();
+    }
+
+    public int getSubmitted() {
+        return submitted.get();
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
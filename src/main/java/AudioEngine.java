@@ -0,0 +1,256 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.SourceDataLine;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Software mixer for short sound effects.
+ *
+ * Each effect is decoded once into 16-bit PCM at load time. Playback requests
+ * go through a bounded lock-free queue and are serviced by a dedicated mixer
+ * thread that owns a single output line and a fixed pool of voices. When every
+ * voice is busy the one that has played longest is stolen.
+ */
+public class AudioEngine {
+    private static final float SAMPLE_RATE = 48000f;
+    private static final int CHANNELS = 2;
+    private static final int BLOCK_FRAMES = 512;
+    private static final int QUEUE_SIZE = 256;
+
+    private final AudioFormat format = new AudioFormat(SAMPLE_RATE, 16, CHANNELS, true, false);
+    private final List<short[]> samples = new ArrayList<>();
+
+    // Voice pool, only touched by the mixer thread
+    private final int[] voiceSample;
+    private final int[] voicePosition;
+    private final float[] voiceGain;
+
+    // Bounded multi-producer queue of packed (sample, gain) triggers
+    private final AtomicLongArray queueSequence = new AtomicLongArray(QUEUE_SIZE);
+    private final long[] queuePayload = new long[QUEUE_SIZE];
+    private final AtomicLong queueTail = new AtomicLong();
+    private long queueHead = 0;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong stolen = new AtomicLong();
+
+    private volatile boolean running = false;
+    private Thread mixerThread;
+
+    public AudioEngine(int voices) {
+        voiceSample = new int[voices];
+        voicePosition = new int[voices];
+        voiceGain = new float[voices];
+        Arrays.fill(voiceSample, -1);
+        for (int i = 0; i < QUEUE_SIZE; i++)
+            queueSequence.set(i, i);
+    }
+
+    /**
+     * Decodes a sound file into memory and returns its id, or -1 if it could
+     * not be loaded.
+     */
+    public int load(String filename) {
+        AquariumEvents.AssetLoad event = new AquariumEvents.AssetLoad();
+        event.begin();
+        event.file = filename;
+        int id = decode(new File(filename));
+        if (id >= 0) {
+            event.loaded = true;
+            event.samples = samples.get(id).length / CHANNELS;
+        }
+        event.commit();
+        return id;
+    }
+
+    private int decode(File file) {
+        if (!file.exists())
+            return -1;
+        try (AudioInputStream source = AudioSystem.getAudioInputStream(file);
+                AudioInputStream pcm = AudioSystem.getAudioInputStream(format, source)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = pcm.read(buffer)) > 0)
+                bytes.write(buffer, 0, read);
+
+            byte[] data = bytes.toByteArray();
+            short[] pcmSamples = new short[data.length / 2];
+            for (int i = 0; i < pcmSamples.length; i++)
+                pcmSamples[i] = (short) ((data[2 * i] & 0xFF) | (data[2 * i + 1] << 8));
+
+            samples.add(pcmSamples);
+            return samples.size() - 1;
+        } catch (Exception e) {
+            System.err.println("Error loading sound " + file + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Opens the output line and starts the mixer thread.
+     */
+    public void start() {
+        SourceDataLine line;
+        try {
+            line = AudioSystem.getSourceDataLine(format);
+            line.open(format, BLOCK_FRAMES * CHANNELS * 2 * 4);
+            line.start();
+        } catch (Exception e) {
+            System.err.println("Audio output unavailable: " + e.getMessage());
+            return;
+        }
+        running = true;
+        mixerThread = new Thread(() -> mix(line), "aquarium-audio");
+        mixerThread.setDaemon(true);
+        mixerThread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (mixerThread != null) {
+            try {
+                mixerThread.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Queues a sound for playback. Never blocks; the request is dropped if the
+     * queue is full or the engine is not running.
+     *
+     * @param gainDb gain in decibels, e.g. -10
+     */
+    public void play(int sample, float gainDb) {
+        AquariumEvents.PlaySound event = new AquariumEvents.PlaySound();
+        event.begin();
+        boolean queued = enqueue(sample, gainDb);
+        if (!queued)
+            dropped.incrementAndGet();
+        if (event.shouldCommit()) {
+            event.sound = sample;
+            event.gainDb = gainDb;
+            event.queued = queued;
+        }
+        event.commit();
+    }
+
+    private boolean enqueue(int sample, float gainDb) {
+        if (!running || sample < 0 || sample >= samples.size())
+            return false;
+        float gain = (float) Math.pow(10, gainDb / 20.0);
+        long payload = ((long) sample << 32) | (Float.floatToRawIntBits(gain) & 0xFFFFFFFFL);
+
+        long tail = queueTail.get();
+        while (true) {
+            int slot = (int) (tail % QUEUE_SIZE);
+            long sequence = queueSequence.get(slot);
+            if (sequence == tail) {
+                if (queueTail.compareAndSet(tail, tail + 1)) {
+                    queuePayload[slot] = payload;
+                    queueSequence.set(slot, tail + 1);
+                    return true;
+                }
+                tail = queueTail.get();
+            } else if (sequence < tail) {
+                return false; // Queue full
+            } else {
+                tail = queueTail.get();
+            }
+        }
+    }
+
+    private void mix(SourceDataLine line) {
+        int[] accumulator = new int[BLOCK_FRAMES * CHANNELS];
+        byte[] out = new byte[BLOCK_FRAMES * CHANNELS * 2];
+
+        while (running) {
+            drainQueue();
+
+            Arrays.fill(accumulator, 0);
+            for (int v = 0; v < voiceSample.length; v++) {
+                if (voiceSample[v] < 0)
+                    continue;
+                short[] data = samples.get(voiceSample[v]);
+                float gain = voiceGain[v];
+                int position = voicePosition[v];
+                int n = Math.min(accumulator.length, data.length - position);
+                for (int i = 0; i < n; i++)
+                    accumulator[i] += (int) (data[position + i] * gain);
+                voicePosition[v] = position + n;
+                if (voicePosition[v] >= data.length)
+                    voiceSample[v] = -1;
+            }
+
+            for (int i = 0; i < accumulator.length; i++) {
+                int s = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, accumulator[i]));
+                out[2 * i] = (byte) s;
+                out[2 * i + 1] = (byte) (s >> 8);
+            }
+            line.write(out, 0, out.length); // Blocks until the device needs more audio
+        }
+        line.drain();
+        line.close();
+    }
+
+    private void drainQueue() {
+        while (true) {
+            int slot = (int) (queueHead % QUEUE_SIZE);
+            if (queueSequence.get(slot) != queueHead + 1)
+                return;
+            long payload = queuePayload[slot];
+            queueSequence.set(slot, queueHead + QUEUE_SIZE);
+            queueHead++;
+            startVoice((int) (payload >>> 32), Float.intBitsToFloat((int) payload));
+        }
+    }
+
+    private void startVoice(int sample, float gain) {
+        int voice = -1;
+        int oldest = -1;
+        for (int v = 0; v < voiceSample.length; v++) {
+            if (voiceSample[v] < 0) {
+                voice = v;
+                break;
+            }
+            if (oldest < 0 || voicePosition[v] > voicePosition[oldest])
+                oldest = v;
+        }
+        if (voice < 0) {
+            if (oldest < 0) {
+                dropped.incrementAndGet();
+                return;
+            }
+            AquariumEvents.VoiceSteal event = new AquariumEvents.VoiceSteal();
+            if (event.shouldCommit()) {
+                event.sound = voiceSample[oldest];
+                event.voices = voiceSample.length;
+                event.commit();
+            }
+            voice = oldest;
+            stolen.incrementAndGet();
+        }
+        voiceSample[voice] = sample;
+        voicePosition[voice] = 0;
+        voiceGain[voice] = gain;
+    }
+
+    /** Requests that never reached a voice (queue full, engine off, unknown sound). */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /** Voices cut short to make room for a newer sound. */
+    public long getStolenCount() {
+        return stolen.get();
+    }
+}
@@ -26,13 +26,12 @@ public class Bubble {
         }
     }
 
-    public void draw(GraphicsContext gc) {
-        double focalLength = 400;
-        double scale = focalLength / (focalLength + z);
+    public void draw(GraphicsContext gc, Camera camera) {
+        double scale = camera.scaleAt(z);
 
         double drawSize = size * scale;
-        double centerX = 1024 / 2.0;
-        double centerY = 600 / 2.0;
+        double centerX = camera.getCenterX();
+        double centerY = camera.getCenterY();
 
         double drawX = centerX + (x - centerX) * scale;
         double drawY = centerY + (y - centerY) * scale;
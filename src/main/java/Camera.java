@@ -0,0 +1,147 @@
+/**
+ * Perspective camera orbiting the center of the tank.
+ *
+ * The rotation is evaluated once per frame in {@link #setAngle(double)};
+ * entities are then projected in bulk into a {@link Projection} that the
+ * draw calls read from. This is the single place that knows the view size,
+ * focal length and near plane.
+ */
+public class Camera {
+    private static final double DEFAULT_FOCAL_LENGTH = 400;
+    private static final double DEFAULT_CENTER_Z = 400.0;
+    private static final double NEAR_MARGIN = 10;
+
+    private final double width;
+    private final double height;
+    private final double focalLength;
+    private final double centerX, centerY, centerZ;
+    private final double nearDepth;
+
+    private double angle = 0;
+    private double cos = 1;
+    private double sin = 0;
+
+    public Camera(double width, double height) {
+        this(width, height, DEFAULT_FOCAL_LENGTH, DEFAULT_CENTER_Z);
+    }
+
+    public Camera(double width, double height, double focalLength, double centerZ) {
+        this.width = width;
+        this.height = height;
+        this.focalLength = focalLength;
+        this.centerX = width / 2.0;
+        this.centerY = height / 2.0;
+        this.centerZ = centerZ;
+        this.nearDepth = -focalLength + NEAR_MARGIN;
+    }
+
+    /**
+     * Sets the orbit angle and caches its sine and cosine for the frame.
+     */
+    public void setAngle(double angle) {
+        this.angle = angle;
+        this.cos = Math.cos(angle);
+        this.sin = Math.sin(angle);
+    }
+
+    /**
+     * Projects {@code count} world positions into {@code out}. Points behind
+     * the near plane get a scale of zero.
+     */
+    public void project(double[] x, double[] y, double[] z, int count, Projection out) {
+        out.ensureCapacity(count);
+        for (int i = 0; i < count; i++)
+            project(x[i], y[i], z[i], out, i);
+    }
+
+    /**
+     * Projects {@code count} positions interpolated {@code alpha} of the way
+     * from the previous ({@code px, py, pz}) to the current positions.
+     */
+    public void project(double[] px, double[] py, double[] pz, double[] x, double[] y, double[] z, double alpha,
+            int count, Projection out) {
+        out.ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            project(px[i] + (x[i] - px[i]) * alpha,
+                    py[i] + (y[i] - py[i]) * alpha,
+                    pz[i] + (z[i] - pz[i]) * alpha, out, i);
+        }
+    }
+
+    /**
+     * Projects one world position into slot {@code i} of {@code out}.
+     */
+    public void project(double x, double y, double z, Projection out, int i) {
+        double dx = x - centerX;
+        double dz = z - centerZ;
+
+        double rx = dx * cos - dz * sin;
+        double rz = dx * sin + dz * cos;
+
+        double newZ = rz + centerZ;
+        out.depth[i] = newZ;
+
+        if (newZ < nearDepth) {
+            out.scale[i] = 0;
+            return;
+        }
+
+        double scale = focalLength / (focalLength + newZ);
+        out.scale[i] = scale;
+        out.x[i] = centerX + rx * scale;
+        out.y[i] = centerY + (y - centerY) * scale;
+    }
+
+    /**
+     * Un-projects a screen position onto the plane at rotated depth
+     * {@code rz} (0 is the pivot plane) and writes world x, y, z into
+     * {@code out}.
+     */
+    public void unproject(double screenX, double screenY, double rz, double[] out) {
+        // 1. Scale at the target plane
+        double scale = focalLength / (focalLength + rz + centerZ);
+
+        // 2. Screen to rotated local coordinates
+        double rx = (screenX - centerX) / scale;
+        double ry = (screenY - centerY) / scale; // Y is not rotated
+
+        // 3. Inverse rotation (rotate by -angle)
+        double dx = rx * cos + rz * sin;
+        double dz = -rx * sin + rz * cos;
+
+        // 4. World coordinates
+        out[0] = centerX + dx;
+        out[1] = centerY + ry;
+        out[2] = centerZ + dz;
+    }
+
+    /** Perspective scale at an un-rotated depth, for screen-aligned effects. */
+    public double scaleAt(double z) {
+        return focalLength / (focalLength + z);
+    }
+
+    public double getAngle() {
+        return angle;
+    }
+
+    public double getWidth() {
+        return width;
+    }
+
+    public double getHeight() {
+        return height;
+    }
+
+    public double getCenterX() {
+        return centerX;
+    }
+
+    public double getCenterY() {
+        return centerY;
+    }
+
+    /** Depth of the orbit pivot. */
+    public double getCenterZ() {
+        return centerZ;
+    }
+}
@@ -0,0 +1,103 @@
+import java.util.Arrays;
+
+/**
+ * Reusable, allocation-free depth-sorted draw list.
+ *
+ * Each entry is packed into one {@code long}: the upper 32 bits hold the
+ * depth as an order-preserving integer (inverted so far entries sort first),
+ * the lower 32 bits hold a 4-bit type tag and a 28-bit entity index. Entries
+ * are sorted with a stable LSD radix sort over the depth bits.
+ */
+public class DrawList {
+    public static final int FISH = 0;
+    public static final int FOOD = 1;
+    public static final int PARTICLE = 2;
+
+    private static final int INDEX_BITS = 28;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int PASSES = 32 / RADIX_BITS;
+
+    private long[] keys = new long[1024];
+    private long[] scratch = new long[1024];
+    private final int[] histogram = new int[PASSES * RADIX];
+    private int count = 0;
+
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Adds an entity; larger depths are drawn first.
+     */
+    public void add(double depth, int tag, int index) {
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, count * 2);
+            scratch = new long[count * 2];
+        }
+        keys[count++] = ((long) depthKey(depth) << 32) | ((long) tag << INDEX_BITS) | (index & INDEX_MASK);
+    }
+
+    // Maps a depth to an unsigned int that orders far-to-near
+    private static int depthKey(double depth) {
+        int bits = Float.floatToRawIntBits((float) depth);
+        int ascending = bits ^ ((bits >> 31) | 0x80000000);
+        return ~ascending;
+    }
+
+    public void sort() {
+        if (count < 2)
+            return;
+
+        // One scan builds the histograms for every digit
+        Arrays.fill(histogram, 0);
+        for (int i = 0; i < count; i++) {
+            long k = keys[i] >>> 32;
+            for (int p = 0; p < PASSES; p++)
+                histogram[p * RADIX + (int) ((k >>> (p * RADIX_BITS)) & (RADIX - 1))]++;
+        }
+
+        long[] src = keys;
+        long[] dst = scratch;
+        for (int p = 0; p < PASSES; p++) {
+            int base = p * RADIX;
+            int shift = 32 + p * RADIX_BITS;
+
+            // Skip digits that are identical for every entry (common for the high byte)
+            int first = (int) ((src[0] >>> shift) & (RADIX - 1));
+            if (histogram[base + first] == count)
+                continue;
+
+            int sum = 0;
+            for (int d = 0; d < RADIX; d++) {
+                int c = histogram[base + d];
+                histogram[base + d] = sum;
+                sum += c;
+            }
+            for (int i = 0; i < count; i++) {
+                long k = src[i];
+                dst[histogram[base + (int) ((k >>> shift) & (RADIX - 1))]++] = k;
+            }
+            long[] t = src;
+            src = dst;
+            dst = t;
+        }
+        if (src != keys) {
+            scratch = keys;
+            keys = src;
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int tag(int i) {
+        return (int) (keys[i] >>> INDEX_BITS) & 0xF;
+    }
+
+    public int index(int i) {
+        return (int) keys[i] & INDEX_MASK;
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Projected-size thresholds that pick how much work a fish gets when drawn.
+ *
+ * Near fish get the full pitch rotation and swim/eat animation, mid fish an
+ * axis-aligned mirrored sprite, and far fish a flat dot in the sprite's
+ * average color. Thresholds are in screen pixels of sprite width and may be
+ * changed between frames.
+ */
+public final class FishLod {
+    public static final int NEAR = 0;
+    public static final int MID = 1;
+    public static final int FAR = 2;
+
+    public static final double DEFAULT_MID_WIDTH = 40;
+    public static final double DEFAULT_FAR_WIDTH = 4;
+
+    private double midWidth;
+    private double farWidth;
+
+    public FishLod() {
+        this(DEFAULT_MID_WIDTH, DEFAULT_FAR_WIDTH);
+    }
+
+    /**
+     * @param midWidth fish narrower than this lose rotation and animation
+     * @param farWidth fish narrower than this are drawn as dots
+     */
+    public FishLod(double midWidth, double farWidth) {
+        setThresholds(midWidth, farWidth);
+    }
+
+    public void setThresholds(double midWidth, double farWidth) {
+        this.farWidth = Math.max(0, farWidth);
+        this.midWidth = Math.max(this.farWidth, midWidth);
+    }
+
+    public int tier(double projectedWidth) {
+        if (projectedWidth < farWidth)
+            return FAR;
+        return projectedWidth < midWidth ? MID : NEAR;
+    }
+
+    public double getMidWidth() {
+        return midWidth;
+    }
+
+    public double getFarWidth() {
+        return farWidth;
+    }
+}
@@ -0,0 +1,716 @@
+import javafx.scene.canvas.GraphicsContext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Structure-of-arrays store for every fish in the tank.
+ *
+ * Each piece of per-fish state lives in its own primitive array indexed by
+ * fish slot, so the update loop streams through memory instead of chasing
+ * one heap object per fish. {@link Fish} is a lightweight view over a slot.
+ */
+public class FishPopulation {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    // Schooling
+    public static final double NEIGHBOUR_RADIUS = 60;
+    private static final double SEPARATION_RADIUS = 25;
+    private static final double SEPARATION_WEIGHT = 1.5;
+    private static final double ALIGNMENT_WEIGHT = 1.0;
+    private static final double COHESION_WEIGHT = 0.8;
+    private static final double CULL_MARGIN = 1.3; // Covers squash & stretch, eat bounce and pitch
+    private static final double FAR_DOT_SCALE = 0.4; // Sprites have transparent margins around the body
+    private static final double MIN_DRAW_ROTATION = 0.25; // Degrees of pitch not worth a transform
+    private static final int SNAPSHOT_BYTES_PER_FISH = 21 * 8 + 4 + 8; // Persistent doubles, sprite type, random state
+
+    private int count = 0;
+
+    // Physics State
+    private double[] x, y, z;
+    private double[] px, py, pz; // Position before the last update, for interpolation
+    private double[] vx, vy, vz;
+    private double[] ax, ay, az;
+
+    // Properties
+    private double[] width, height;
+    private int[] spriteType;
+    private double[] maxSpeed;
+    private double[] maxForce;
+
+    // Animation State
+    private double[] currentScaleX;
+    private double[] swimTime;
+    private double[] eatAnimTimer;
+
+    // Wander State
+    private double[] wanderTheta;
+    private double[] wanderPhi;
+
+    // Each fish draws from its own stream, so results do not depend on how updates are split across threads
+    private long[] random;
+
+    // Schooling steering from the last flock() pass
+    private double[] flockX, flockY, flockZ;
+
+    // Integration scratch: this tick's speed limit and speed before clamping
+    private double[] speedLimit, speed;
+
+    public FishPopulation() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public FishPopulation(int capacity) {
+        allocate(Math.max(1, capacity));
+    }
+
+    private void allocate(int capacity) {
+        x = new double[capacity];
+        y = new double[capacity];
+        z = new double[capacity];
+        px = new double[capacity];
+        py = new double[capacity];
+        pz = new double[capacity];
+        vx = new double[capacity];
+        vy = new double[capacity];
+        vz = new double[capacity];
+        ax = new double[capacity];
+        ay = new double[capacity];
+        az = new double[capacity];
+        width = new double[capacity];
+        height = new double[capacity];
+        spriteType = new int[capacity];
+        maxSpeed = new double[capacity];
+        maxForce = new double[capacity];
+        currentScaleX = new double[capacity];
+        swimTime = new double[capacity];
+        eatAnimTimer = new double[capacity];
+        wanderTheta = new double[capacity];
+        wanderPhi = new double[capacity];
+        random = new long[capacity];
+        flockX = new double[capacity];
+        flockY = new double[capacity];
+        flockZ = new double[capacity];
+        speedLimit = new double[capacity];
+        speed = new double[capacity];
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= x.length)
+            return;
+        int capacity = Math.max(needed, x.length * 2);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        z = Arrays.copyOf(z, capacity);
+        px = Arrays.copyOf(px, capacity);
+        py = Arrays.copyOf(py, capacity);
+        pz = Arrays.copyOf(pz, capacity);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        vz = Arrays.copyOf(vz, capacity);
+        ax = Arrays.copyOf(ax, capacity);
+        ay = Arrays.copyOf(ay, capacity);
+        az = Arrays.copyOf(az, capacity);
+        width = Arrays.copyOf(width, capacity);
+        height = Arrays.copyOf(height, capacity);
+        spriteType = Arrays.copyOf(spriteType, capacity);
+        maxSpeed = Arrays.copyOf(maxSpeed, capacity);
+        maxForce = Arrays.copyOf(maxForce, capacity);
+        currentScaleX = Arrays.copyOf(currentScaleX, capacity);
+        swimTime = Arrays.copyOf(swimTime, capacity);
+        eatAnimTimer = Arrays.copyOf(eatAnimTimer, capacity);
+        wanderTheta = Arrays.copyOf(wanderTheta, capacity);
+        wanderPhi = Arrays.copyOf(wanderPhi, capacity);
+        random = Arrays.copyOf(random, capacity);
+        flockX = Arrays.copyOf(flockX, capacity);
+        flockY = Arrays.copyOf(flockY, capacity);
+        flockZ = Arrays.copyOf(flockZ, capacity);
+        speedLimit = Arrays.copyOf(speedLimit, capacity);
+        speed = Arrays.copyOf(speed, capacity);
+    }
+
+    /**
+     * Adds a fish and returns its slot index.
+     *
+     * @param type         index of the fish sprite
+     * @param spriteWidth  width of the sprite image in pixels
+     * @param spriteHeight height of the sprite image in pixels
+     * @param seed         seed for the fish's own random stream
+     */
+    public int add(int type, double spriteWidth, double spriteHeight, double x, double y, double z, double speed,
+            double scale, long seed) {
+        ensureCapacity(count + 1);
+        int i = count++;
+
+        this.spriteType[i] = type;
+        this.x[i] = x;
+        this.y[i] = y;
+        this.z[i] = z;
+        this.px[i] = x;
+        this.py[i] = y;
+        this.pz[i] = z;
+        this.width[i] = spriteWidth * scale;
+        this.height[i] = spriteHeight * scale;
+
+        this.maxSpeed[i] = speed * 2.0;
+        this.maxForce[i] = 0.1; // Increased steering force
+
+        this.ax[i] = 0;
+        this.ay[i] = 0;
+        this.az[i] = 0;
+        this.currentScaleX[i] = 1.0;
+        this.swimTime[i] = 0;
+        this.eatAnimTimer[i] = 0;
+        this.wanderTheta[i] = 0;
+        this.wanderPhi[i] = 0;
+        this.flockX[i] = 0;
+        this.flockY[i] = 0;
+        this.flockZ[i] = 0;
+        this.random[i] = SeededRandom.seed(seed);
+
+        // Initial Velocity
+        double angle = nextRandom(i) * Math.PI * 2;
+        this.vx[i] = Math.cos(angle) * speed;
+        this.vy[i] = Math.sin(angle) * speed;
+        this.vz[i] = (nextRandom(i) - 0.5) * speed;
+        return i;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Copies the whole population into {@code dst}, replacing its contents.
+     */
+    public void copyTo(FishPopulation dst) {
+        dst.ensureCapacity(count);
+        dst.count = count;
+        System.arraycopy(x, 0, dst.x, 0, count);
+        System.arraycopy(y, 0, dst.y, 0, count);
+        System.arraycopy(z, 0, dst.z, 0, count);
+        System.arraycopy(px, 0, dst.px, 0, count);
+        System.arraycopy(py, 0, dst.py, 0, count);
+        System.arraycopy(pz, 0, dst.pz, 0, count);
+        System.arraycopy(vx, 0, dst.vx, 0, count);
+        System.arraycopy(vy, 0, dst.vy, 0, count);
+        System.arraycopy(vz, 0, dst.vz, 0, count);
+        System.arraycopy(ax, 0, dst.ax, 0, count);
+        System.arraycopy(ay, 0, dst.ay, 0, count);
+        System.arraycopy(az, 0, dst.az, 0, count);
+        System.arraycopy(width, 0, dst.width, 0, count);
+        System.arraycopy(height, 0, dst.height, 0, count);
+        System.arraycopy(spriteType, 0, dst.spriteType, 0, count);
+        System.arraycopy(maxSpeed, 0, dst.maxSpeed, 0, count);
+        System.arraycopy(maxForce, 0, dst.maxForce, 0, count);
+        System.arraycopy(currentScaleX, 0, dst.currentScaleX, 0, count);
+        System.arraycopy(swimTime, 0, dst.swimTime, 0, count);
+        System.arraycopy(eatAnimTimer, 0, dst.eatAnimTimer, 0, count);
+        System.arraycopy(wanderTheta, 0, dst.wanderTheta, 0, count);
+        System.arraycopy(wanderPhi, 0, dst.wanderPhi, 0, count);
+        System.arraycopy(random, 0, dst.random, 0, count);
+    }
+
+    // Next value in [0, 1) from fish i's random stream
+    private double nextRandom(int i) {
+        long state = SeededRandom.step(random[i]);
+        random[i] = state;
+        return SeededRandom.toDouble(state);
+    }
+
+    // Bytes write() needs: the count, every double field, the sprite type and random state
+    int snapshotBytes() {
+        return 4 + count * SNAPSHOT_BYTES_PER_FISH;
+    }
+
+    /** Appends every persistent field of every fish, for a {@link TankSnapshot}. */
+    void write(ByteBuffer out) {
+        out.putInt(count);
+        TankSnapshot.putDoubles(out, x, count);
+        TankSnapshot.putDoubles(out, y, count);
+        TankSnapshot.putDoubles(out, z, count);
+        TankSnapshot.putDoubles(out, px, count);
+        TankSnapshot.putDoubles(out, py, count);
+        TankSnapshot.putDoubles(out, pz, count);
+        TankSnapshot.putDoubles(out, vx, count);
+        TankSnapshot.putDoubles(out, vy, count);
+        TankSnapshot.putDoubles(out, vz, count);
+        TankSnapshot.putDoubles(out, ax, count);
+        TankSnapshot.putDoubles(out, ay, count);
+        TankSnapshot.putDoubles(out, az, count);
+        TankSnapshot.putDoubles(out, width, count);
+        TankSnapshot.putDoubles(out, height, count);
+        TankSnapshot.putDoubles(out, maxSpeed, count);
+        TankSnapshot.putDoubles(out, maxForce, count);
+        TankSnapshot.putDoubles(out, currentScaleX, count);
+        TankSnapshot.putDoubles(out, swimTime, count);
+        TankSnapshot.putDoubles(out, eatAnimTimer, count);
+        TankSnapshot.putDoubles(out, wanderTheta, count);
+        TankSnapshot.putDoubles(out, wanderPhi, count);
+        TankSnapshot.putLongs(out, random, count);
+        TankSnapshot.putInts(out, spriteType, count);
+    }
+
+    /** Replaces the population with one written by {@link #write}. */
+    void read(ByteBuffer in) throws IOException {
+        int n = TankSnapshot.readCount(in, SNAPSHOT_BYTES_PER_FISH);
+        ensureCapacity(n);
+        count = n;
+        TankSnapshot.getDoubles(in, x, n, n);
+        TankSnapshot.getDoubles(in, y, n, n);
+        TankSnapshot.getDoubles(in, z, n, n);
+        TankSnapshot.getDoubles(in, px, n, n);
+        TankSnapshot.getDoubles(in, py, n, n);
+        TankSnapshot.getDoubles(in, pz, n, n);
+        TankSnapshot.getDoubles(in, vx, n, n);
+        TankSnapshot.getDoubles(in, vy, n, n);
+        TankSnapshot.getDoubles(in, vz, n, n);
+        TankSnapshot.getDoubles(in, ax, n, n);
+        TankSnapshot.getDoubles(in, ay, n, n);
+        TankSnapshot.getDoubles(in, az, n, n);
+        TankSnapshot.getDoubles(in, width, n, n);
+        TankSnapshot.getDoubles(in, height, n, n);
+        TankSnapshot.getDoubles(in, maxSpeed, n, n);
+        TankSnapshot.getDoubles(in, maxForce, n, n);
+        TankSnapshot.getDoubles(in, currentScaleX, n, n);
+        TankSnapshot.getDoubles(in, swimTime, n, n);
+        TankSnapshot.getDoubles(in, eatAnimTimer, n, n);
+        TankSnapshot.getDoubles(in, wanderTheta, n, n);
+        TankSnapshot.getDoubles(in, wanderPhi, n, n);
+        TankSnapshot.getLongs(in, random, n, n);
+        TankSnapshot.getInts(in, spriteType, n, n);
+    }
+
+    /** Returns a view over slot {@code i}. */
+    public Fish get(int i) {
+        return new Fish(this, i);
+    }
+
+    public void excite(int i) {
+        eatAnimTimer[i] = 0.5; // Visual feedback
+        // Boost velocity towards current direction to simulate a "startle" or "rush"
+        vx[i] *= 2.0;
+        vy[i] *= 2.0;
+        vz[i] *= 2.0;
+    }
+
+    /** Zeroes every fish's schooling force, for when schooling is turned off. */
+    public void clearFlocking() {
+        Arrays.fill(flockX, 0, count, 0);
+        Arrays.fill(flockY, 0, count, 0);
+        Arrays.fill(flockZ, 0, count, 0);
+    }
+
+    /**
+     * Computes the schooling force on fish {@code i} from its neighbours in
+     * {@code grid}: separation from every nearby fish, alignment and cohesion
+     * with nearby fish of the same species. Only reads positions and
+     * velocities and only writes slot {@code i}'s flock force, so every fish
+     * can be processed concurrently before any of them moves.
+     *
+     * @param neighbours scratch buffer; its length caps how many neighbours
+     *                   are considered
+     */
+    public void flock(int i, SpatialHash grid, int[] neighbours) {
+        int found = grid.queryRadius(x[i], y[i], z[i], NEIGHBOUR_RADIUS, neighbours);
+
+        double sepX = 0, sepY = 0, sepZ = 0;
+        double velX = 0, velY = 0, velZ = 0;
+        double posX = 0, posY = 0, posZ = 0;
+        int school = 0;
+        for (int k = 0; k < found; k++) {
+            int j = neighbours[k];
+            if (j == i)
+                continue;
+            double dx = x[i] - x[j];
+            double dy = y[i] - y[j];
+            double dz = z[i] - z[j];
+            double d2 = dx * dx + dy * dy + dz * dz;
+
+            // Separation: push away, stronger the closer the neighbour
+            if (d2 < SEPARATION_RADIUS * SEPARATION_RADIUS && d2 > 0) {
+                sepX += dx / d2;
+                sepY += dy / d2;
+                sepZ += dz / d2;
+            }
+
+            if (spriteType[j] == spriteType[i]) {
+                velX += vx[j];
+                velY += vy[j];
+                velZ += vz[j];
+                posX += x[j];
+                posY += y[j];
+                posZ += z[j];
+                school++;
+            }
+        }
+
+        double fx = 0, fy = 0, fz = 0;
+        double limitSpeed = maxSpeed[i];
+        double limitForce = maxForce[i];
+
+        // Each rule is a Reynolds steer: desired velocity minus current, clamped
+        double sepLength = Math.sqrt(sepX * sepX + sepY * sepY + sepZ * sepZ);
+        if (sepLength > 0) {
+            double s = limitSpeed / sepLength;
+            double sx = sepX * s - vx[i], sy = sepY * s - vy[i], sz = sepZ * s - vz[i];
+            double k = forceScale(sx, sy, sz, limitForce) * SEPARATION_WEIGHT;
+            fx += sx * k;
+            fy += sy * k;
+            fz += sz * k;
+        }
+        if (school > 0) {
+            double velLength = Math.sqrt(velX * velX + velY * velY + velZ * velZ);
+            if (velLength > 0) {
+                double s = limitSpeed / velLength;
+                double sx = velX * s - vx[i], sy = velY * s - vy[i], sz = velZ * s - vz[i];
+                double k = forceScale(sx, sy, sz, limitForce) * ALIGNMENT_WEIGHT;
+                fx += sx * k;
+                fy += sy * k;
+                fz += sz * k;
+            }
+
+            double cx = posX / school - x[i];
+            double cy = posY / school - y[i];
+            double cz = posZ / school - z[i];
+            double cLength = Math.sqrt(cx * cx + cy * cy + cz * cz);
+            if (cLength > 0) {
+                double s = limitSpeed / cLength;
+                double sx = cx * s - vx[i], sy = cy * s - vy[i], sz = cz * s - vz[i];
+                double k = forceScale(sx, sy, sz, limitForce) * COHESION_WEIGHT;
+                fx += sx * k;
+                fy += sy * k;
+                fz += sz * k;
+            }
+        }
+
+        flockX[i] = fx;
+        flockY[i] = fy;
+        flockZ[i] = fz;
+    }
+
+    /**
+     * Steers and moves fish {@code i}. Only slot {@code i} is written, so
+     * different slots may be updated concurrently; reaching the target food
+     * is reported through the return value and left to the caller to apply.
+     *
+     * @return true if the fish is close enough to eat {@code targetFood}
+     */
+    public boolean update(int i, double dt, double canvasWidth, double canvasHeight, Food targetFood) {
+        boolean ate = steer(i, canvasWidth, canvasHeight, targetFood);
+        integrate(i, i + 1);
+        animate(i, dt);
+        return ate;
+    }
+
+    /**
+     * Bulk form of {@link #update}: steers, integrates and animates fish
+     * {@code [from, to)} with the integration done by the current
+     * {@link IntegrationKernel}. Fish that reached their food are written to
+     * {@code eaten} from index {@code from}.
+     *
+     * @return how many fish reached their food
+     */
+    public int update(int from, int to, double dt, double canvasWidth, double canvasHeight, Food[] targets,
+            int[] eaten) {
+        int out = from;
+        for (int i = from; i < to; i++) {
+            if (steer(i, canvasWidth, canvasHeight, targets[i]))
+                eaten[out++] = i;
+        }
+        integrate(from, to);
+        for (int i = from; i < to; i++)
+            animate(i, dt);
+        return out - from;
+    }
+
+    // Behaviours: sets the acceleration and this tick's speed limit
+    private boolean steer(int i, double canvasWidth, double canvasHeight, Food targetFood) {
+        px[i] = x[i];
+        py[i] = y[i];
+        pz[i] = z[i];
+
+        // 1. Reset Acceleration
+        ax[i] = 0;
+        ay[i] = 0;
+        az[i] = 0;
+
+        // 2. Apply Behaviors
+        boolean seeking = false;
+        boolean ate = false;
+
+        // Dynamic Max Speed/Force
+        double currentMaxSpeed = maxSpeed[i];
+        double currentMaxForce = maxForce[i];
+
+        // Seek Food (Global Vision)
+        if (targetFood != null && targetFood.isActive()) {
+            double dist = distanceTo(i, targetFood.getX(), targetFood.getY(), targetFood.getZ());
+
+            // "Speed Punch" / Excitement when close to food
+            if (dist < 2000) { // Global excitement
+                currentMaxSpeed *= 2.5; // Rush towards food
+                currentMaxForce *= 4.0; // Much sharper turning
+            }
+
+            seek(i, targetFood.getX(), targetFood.getY(), targetFood.getZ(), currentMaxSpeed, currentMaxForce);
+            seeking = true;
+
+            // Easier eating: larger radius
+            if (dist < 60) {
+                ate = true;
+                eatAnimTimer[i] = 0.3;
+            }
+        }
+
+        // Wander and school (if not seeking)
+        if (!seeking) {
+            wander(i, currentMaxForce);
+            ax[i] += flockX[i];
+            ay[i] += flockY[i];
+            az[i] += flockZ[i];
+        }
+
+        // Avoid Boundaries (Always active, higher priority)
+        avoidBoundaries(i, canvasWidth, canvasHeight, currentMaxSpeed, currentMaxForce);
+
+        speedLimit[i] = currentMaxSpeed;
+        return ate;
+    }
+
+    // 3. Physics Update: accelerate, limit speed and move
+    private void integrate(int from, int to) {
+        IntegrationKernel.get().integrateClamped(x, y, z, vx, vy, vz, ax, ay, az, speedLimit, speed, from, to);
+    }
+
+    // 4. Animation Update
+    private void animate(int i, double dt) {
+        // Swim speed coupled to movement speed
+        double animSpeed = 2.0 + (speed[i] / maxSpeed[i]) * 8.0;
+        swimTime[i] += dt * animSpeed;
+
+        if (eatAnimTimer[i] > 0)
+            eatAnimTimer[i] -= dt;
+
+        // Procedural 3D Turn
+        if (speed[i] > 0.1) {
+            double desiredFacing = (vx[i] >= 0) ? 1.0 : -1.0;
+            double turnRate = 5.0 * dt;
+            currentScaleX[i] += (desiredFacing - currentScaleX[i]) * turnRate;
+        }
+    }
+
+    private void seek(int i, double tx, double ty, double tz, double limitSpeed, double limitForce) {
+        double dx = tx - (x[i] + width[i] / 2);
+        double dy = ty - (y[i] + height[i] / 2);
+        double dz = tz - z[i];
+
+        double dist = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (dist > 0) {
+            dx = (dx / dist) * limitSpeed;
+            dy = (dy / dist) * limitSpeed;
+            dz = (dz / dist) * limitSpeed;
+
+            double steerX = dx - vx[i];
+            double steerY = dy - vy[i];
+            double steerZ = dz - vz[i];
+
+            limitForce(i, steerX, steerY, steerZ, limitForce);
+        }
+    }
+
+    private void wander(int i, double limitForce) {
+        double wanderR = 25;
+        double wanderD = 80;
+        double change = 0.5; // More erratic wandering
+
+        wanderTheta[i] += (nextRandom(i) * 2 - 1) * change;
+        wanderPhi[i] += (nextRandom(i) * 2 - 1) * change;
+
+        double speed = Math.sqrt(vx[i] * vx[i] + vy[i] * vy[i] + vz[i] * vz[i]);
+        double cx = 0, cy = 0, cz = 0;
+        if (speed > 0) {
+            cx = (vx[i] / speed) * wanderD;
+            cy = (vy[i] / speed) * wanderD;
+            cz = (vz[i] / speed) * wanderD;
+        }
+
+        double dx = wanderR * Math.sin(wanderTheta[i]) * Math.cos(wanderPhi[i]);
+        double dy = wanderR * Math.sin(wanderTheta[i]) * Math.sin(wanderPhi[i]);
+        double dz = wanderR * Math.cos(wanderTheta[i]);
+
+        double steerX = cx + dx;
+        double steerY = cy + dy;
+        double steerZ = cz + dz;
+
+        limitForce(i, steerX, steerY, steerZ, limitForce);
+    }
+
+    private void avoidBoundaries(int i, double canvasWidth, double canvasHeight, double limitSpeed,
+            double limitForce) {
+        // Allow fish to go slightly off-screen before turning back
+        double margin = -50;
+        double turnFactor = 1.0;
+
+        double steerX = 0, steerY = 0, steerZ = 0;
+
+        if (x[i] < margin)
+            steerX += limitSpeed;
+        if (x[i] > canvasWidth - margin)
+            steerX -= limitSpeed;
+
+        if (y[i] < margin)
+            steerY += limitSpeed;
+        if (y[i] > canvasHeight - margin)
+            steerY -= limitSpeed;
+
+        if (z[i] < -100)
+            steerZ += limitSpeed;
+        if (z[i] > 600)
+            steerZ -= limitSpeed;
+
+        if (steerX != 0 || steerY != 0 || steerZ != 0) {
+            if (Math.abs(vz[i]) < 0.5) {
+                steerZ += (nextRandom(i) < 0.5 ? 1 : -1) * limitSpeed;
+            }
+            limitForce(i, steerX * turnFactor, steerY * turnFactor, steerZ * turnFactor, limitForce);
+        }
+    }
+
+    // Factor that shortens a force to at most maxF
+    private static double forceScale(double fx, double fy, double fz, double maxF) {
+        double force = Math.sqrt(fx * fx + fy * fy + fz * fz);
+        return force > maxF ? maxF / force : 1.0;
+    }
+
+    private void limitForce(int i, double fx, double fy, double fz, double maxF) {
+        double force = Math.sqrt(fx * fx + fy * fy + fz * fz);
+        if (force > maxF) {
+            double scale = maxF / force;
+            fx *= scale;
+            fy *= scale;
+            fz *= scale;
+        }
+        ax[i] += fx;
+        ay[i] += fy;
+        az[i] += fz;
+    }
+
+    public double distanceTo(int i, double tx, double ty, double tz) {
+        double dx = tx - x[i];
+        double dy = ty - y[i];
+        double dz = tz - z[i];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Projects every fish into {@code out} for this frame.
+     */
+    public void project(Camera camera, Projection out) {
+        camera.project(x, y, z, count, out);
+    }
+
+    /**
+     * Projects every fish at a point {@code alpha} of the way from its
+     * previous position to its current one.
+     */
+    public void project(Camera camera, double alpha, Projection out) {
+        camera.project(px, py, pz, x, y, z, alpha, count, out);
+    }
+
+    /**
+     * True if fish {@code i}, including its animation, can touch the screen.
+     */
+    public boolean isInView(int i, Projection projection, double viewWidth, double viewHeight) {
+        double w = width[i];
+        double h = height[i];
+        return projection.isInView(i, w / 2, h / 2, w / 2 * CULL_MARGIN, h / 2 * CULL_MARGIN, viewWidth,
+                viewHeight);
+    }
+
+    /**
+     * Draws one fish from the atlas at the detail level {@code lod} picks for
+     * its projected size, or nothing while the atlas or its sprite is still
+     * loading, e.g. for fish restored from a saved tank before the asset
+     * cache has been read. Works under any transform already set on
+     * {@code gc}, such as a render resolution scale, and leaves it unchanged.
+     *
+     * @param atlas the fish sprites, or null if none have loaded yet
+     */
+    public void draw(GraphicsContext gc, int i, SpriteAtlas atlas, Projection projection, FishLod lod) {
+        if (atlas == null || !projection.isVisible(i) || !atlas.isReady(spriteType[i]))
+            return;
+
+        double scale = projection.getScale(i);
+
+        double drawWidth = width[i] * scale;
+        double drawHeight = height[i] * scale;
+
+        double centerX = projection.getX(i) + drawWidth / 2;
+        double centerY = projection.getY(i) + drawHeight / 2;
+        double facing = currentScaleX[i];
+
+        switch (lod.tier(drawWidth)) {
+            case FishLod.FAR:
+                // A flat dot roughly the size of the body
+                double dot = Math.max(1, drawWidth * FAR_DOT_SCALE);
+                gc.setFill(atlas.getAverageColor(spriteType[i]));
+                gc.fillRect(centerX - dot / 2, centerY - dot / 2, dot, dot);
+                return;
+            case FishLod.MID:
+                atlas.draw(gc, spriteType[i], facing < 0, centerX - drawWidth / 2, centerY - drawHeight / 2,
+                        drawWidth, drawHeight);
+                return;
+            default:
+                break;
+        }
+
+        // Squash & Stretch
+        double stretch = 1.0 + Math.sin(swimTime[i]) * 0.05;
+        double squash = 1.0 - Math.sin(swimTime[i]) * 0.05;
+
+        if (eatAnimTimer[i] > 0) {
+            double eatScale = 1.0 + Math.sin(eatAnimTimer[i] * 20) * 0.2;
+            stretch *= eatScale;
+            squash *= eatScale;
+        }
+
+        // Facing picks the mirrored sprite; the turn itself narrows the width
+        double w = drawWidth * Math.abs(facing) * stretch;
+        double h = drawHeight * squash;
+        if (w < 0.5 || h < 0.5)
+            return;
+
+        // Pitch rotation (based on vertical velocity)
+        double rotAngle = vy[i] * 1.5;
+
+        if (Math.abs(rotAngle) < MIN_DRAW_ROTATION) {
+            atlas.draw(gc, spriteType[i], facing < 0, centerX - w / 2, centerY - h / 2, w, h);
+        } else {
+            double radians = Math.toRadians(rotAngle);
+            double cos = Math.cos(radians);
+            double sin = Math.sin(radians);
+            gc.transform(cos, sin, -sin, cos, centerX, centerY);
+            atlas.draw(gc, spriteType[i], facing < 0, -w / 2, -h / 2, w, h);
+            // Undo the rotation; cheaper than save() and restore() of the whole state
+            gc.transform(cos, -sin, sin, cos, -(cos * centerX + sin * centerY), sin * centerX - cos * centerY);
+        }
+    }
+
+    public int getSpriteType(int i) {
+        return spriteType[i];
+    }
+
+    public double getX(int i) {
+        return x[i];
+    }
+
+    public double getY(int i) {
+        return y[i];
+    }
+
+    public double getZ(int i) {
+        return z[i];
+    }
+}
@@ -0,0 +1,155 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the per-fish update over a {@link FishPopulation}, optionally split
+ * across a {@link ForkJoinPool}.
+ *
+ * Every pass first computes the schooling force for all fish from a
+ * {@link SpatialHash} built at the current positions, then moves them, so no
+ * fish ever reads a neighbour that has already moved this tick.
+ *
+ * The population is cut into contiguous chunks. Each chunk records the fish
+ * that reached their food in its own region of the eaten buffer, and the
+ * regions are merged in chunk order afterwards, so the result is identical
+ * to a serial pass regardless of scheduling.
+ */
+public class FishUpdater {
+    private static final int MIN_PARALLEL_FISH = 2048;
+    private static final int CHUNKS_PER_WORKER = 4;
+    private static final int MAX_NEIGHBOURS = 32; // Caps the cost of dense schools
+
+    private final int workers;
+    private final ForkJoinPool pool;
+
+    private int[] eaten = new int[0];
+    private int eatenCount = 0;
+    private int[] chunkStart = new int[1];
+    private int[] chunkEnd = new int[1];
+    private int[] chunkEaten = new int[1];
+    private int[][] chunkNeighbours = new int[1][MAX_NEIGHBOURS];
+
+    // Inputs for the current pass, published to workers by pool.invoke()
+    private FishPopulation fish;
+    private double dt, canvasWidth, canvasHeight;
+    private Food[] targets;
+    private SpatialHash grid;
+    private boolean flocking;
+
+    /**
+     * @param workers number of worker threads; 1 or less updates serially
+     */
+    public FishUpdater(int workers) {
+        this.workers = Math.max(1, workers);
+        this.pool = this.workers > 1 ? new ForkJoinPool(this.workers) : null;
+    }
+
+    /**
+     * Updates every fish and returns how many reached their target food. The
+     * indices of those fish, in ascending order, are available from
+     * {@link #getEaten(int)}.
+     *
+     * @param grid spatial hash rebuilt at the current positions, or null to
+     *             skip schooling
+     */
+    public int update(FishPopulation fish, double dt, double canvasWidth, double canvasHeight, Food[] targets,
+            SpatialHash grid) {
+        int n = fish.size();
+        if (eaten.length < n)
+            eaten = new int[Math.max(n, eaten.length * 2)];
+
+        this.fish = fish;
+        this.dt = dt;
+        this.canvasWidth = canvasWidth;
+        this.canvasHeight = canvasHeight;
+        this.targets = targets;
+        this.grid = grid;
+
+        int chunks = (pool == null || n < MIN_PARALLEL_FISH) ? 1 : workers * CHUNKS_PER_WORKER;
+        if (chunkStart.length < chunks) {
+            chunkStart = new int[chunks];
+            chunkEnd = new int[chunks];
+            chunkEaten = new int[chunks];
+            chunkNeighbours = new int[chunks][MAX_NEIGHBOURS];
+        }
+        for (int c = 0; c < chunks; c++) {
+            chunkStart[c] = (int) ((long) n * c / chunks);
+            chunkEnd[c] = (int) ((long) n * (c + 1) / chunks);
+        }
+
+        // 1. Schooling forces from the positions at the start of the tick
+        if (grid != null) {
+            flocking = true;
+            if (chunks == 1)
+                flockChunk(0);
+            else
+                pool.invoke(new ChunkTask(0, chunks));
+        }
+
+        // 2. Steering and movement
+        flocking = false;
+        if (chunks == 1)
+            updateChunk(0);
+        else
+            pool.invoke(new ChunkTask(0, chunks));
+
+        // Merge per-chunk results in chunk order; regions only ever move left
+        eatenCount = 0;
+        for (int c = 0; c < chunks; c++) {
+            System.arraycopy(eaten, chunkStart[c], eaten, eatenCount, chunkEaten[c]);
+            eatenCount += chunkEaten[c];
+        }
+
+        this.fish = null;
+        this.targets = null;
+        this.grid = null;
+        return eatenCount;
+    }
+
+    private void flockChunk(int c) {
+        int[] neighbours = chunkNeighbours[c];
+        for (int i = chunkStart[c]; i < chunkEnd[c]; i++)
+            fish.flock(i, grid, neighbours);
+    }
+
+    private void updateChunk(int c) {
+        chunkEaten[c] = fish.update(chunkStart[c], chunkEnd[c], dt, canvasWidth, canvasHeight, targets, eaten);
+    }
+
+    public int getEaten(int k) {
+        return eaten[k];
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void shutdown() {
+        if (pool != null)
+            pool.shutdown();
+    }
+
+    private class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to;
+
+        ChunkTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                if (flocking)
+                    flockChunk(from);
+                else
+                    updateChunk(from);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ChunkTask(from, mid), new ChunkTask(mid, to));
+        }
+    }
+}
@@ -2,7 +2,10 @@ import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
 
 public class Food {
+    private static final double SIZE = 10;
+
     private double x, y, z;
+    private double prevY;
     private double speedY = 1.0; // Falling speed
     private boolean active = true;
 
@@ -10,46 +13,37 @@ public class Food {
         this.x = x;
         this.y = y;
         this.z = z;
+        this.prevY = y;
         this.active = true;
     }
 
-    public Food(double x, double y) {
-        this(x, y, Math.random() * 400);
+    /** Food restored mid-fall, e.g. from a {@link TankSnapshot}. */
+    public Food(double x, double y, double z, double prevY, double speedY) {
+        this(x, y, z);
+        this.prevY = prevY;
+        this.speedY = speedY;
     }
 
-    public void update() {
+    public void update(double floorY) {
+        prevY = y;
         y += speedY;
-        if (y > 600) { // Assuming HEIGHT is 600
+        if (y > floorY) {
             active = false;
         }
     }
 
-    public void draw(GraphicsContext gc, double angle) {
-        // Perspective Projection
-        double focalLength = 400;
-        double centerX = 1024 / 2.0;
-        double centerZ = 400.0;
-        double centerY = 600 / 2.0;
-
-        double dx = x - centerX;
-        double dz = z - centerZ;
-
-        double cos = Math.cos(angle);
-        double sin = Math.sin(angle);
-
-        double rx = dx * cos - dz * sin;
-        double rz = dx * sin + dz * cos;
-
-        double newZ = rz + centerZ;
+    public static boolean isInView(Projection projection, int i, double viewWidth, double viewHeight) {
+        return projection.isInView(i, SIZE / 2, SIZE / 2, SIZE / 2, SIZE / 2, viewWidth, viewHeight);
+    }
 
-        if (newZ < -focalLength + 10)
+    public static void draw(GraphicsContext gc, Projection projection, int i) {
+        if (!projection.isVisible(i))
             return;
 
-        double scale = focalLength / (focalLength + newZ);
-        double drawSize = 10 * scale;
+        double drawSize = SIZE * projection.getScale(i);
 
-        double drawX = centerX + rx * scale;
-        double drawY = centerY + (y - centerY) * scale;
+        double drawX = projection.getX(i);
+        double drawY = projection.getY(i);
 
         // Better visual: Brown with a lighter center for 3D effect
         gc.setFill(Color.SADDLEBROWN);
@@ -66,6 +60,14 @@ public class Food {
         return y;
     }
 
+    public double getPrevY() {
+        return prevY;
+    }
+
+    public double getSpeedY() {
+        return speedY;
+    }
+
     public double getZ() {
         return z;
     }
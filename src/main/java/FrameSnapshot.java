@@ -0,0 +1,89 @@
+import java.util.Arrays;
+
+/**
+ * Copy of the simulation state published once per tick for the renderer.
+ *
+ * A snapshot is written only by the simulation thread and, once handed over
+ * through a {@link SnapshotExchange}, read only by the render thread. It holds
+ * both the previous and the current position of every entity so the renderer
+ * can interpolate between ticks.
+ */
+public class FrameSnapshot {
+    long tick;
+    long publishedNanos;
+    long stepNanos;
+
+    double prevCameraAngle;
+    double cameraAngle;
+    boolean cinematicMode;
+
+    final FishPopulation fish = new FishPopulation();
+    final ParticleSystem particles;
+
+    int foodCount;
+    double[] foodX = new double[0];
+    double[] foodY = new double[0];
+    double[] foodPrevY = new double[0];
+    double[] foodZ = new double[0];
+
+    public FrameSnapshot(int particleCapacity) {
+        this.particles = new ParticleSystem(particleCapacity);
+    }
+
+    void ensureFoodCapacity(int needed) {
+        if (needed <= foodX.length)
+            return;
+        int capacity = Math.max(needed, foodX.length * 2);
+        foodX = Arrays.copyOf(foodX, capacity);
+        foodY = Arrays.copyOf(foodY, capacity);
+        foodPrevY = Arrays.copyOf(foodPrevY, capacity);
+        foodZ = Arrays.copyOf(foodZ, capacity);
+    }
+
+    /**
+     * Camera angle {@code alpha} of the way from the previous tick to this one.
+     */
+    public double getCameraAngle(double alpha) {
+        return prevCameraAngle + (cameraAngle - prevCameraAngle) * alpha;
+    }
+
+    /**
+     * Projects every food pellet at {@code alpha} between ticks.
+     */
+    public void projectFood(Camera camera, double alpha, Projection out) {
+        out.ensureCapacity(foodCount);
+        for (int i = 0; i < foodCount; i++) {
+            double y = foodPrevY[i] + (foodY[i] - foodPrevY[i]) * alpha;
+            camera.project(foodX[i], y, foodZ[i], out, i);
+        }
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public long getPublishedNanos() {
+        return publishedNanos;
+    }
+
+    /** Time the simulation spent computing this tick. */
+    public long getStepNanos() {
+        return stepNanos;
+    }
+
+    public boolean isCinematicMode() {
+        return cinematicMode;
+    }
+
+    public FishPopulation getFish() {
+        return fish;
+    }
+
+    public ParticleSystem getParticles() {
+        return particles;
+    }
+
+    public int getFoodCount() {
+        return foodCount;
+    }
+}
@@ -0,0 +1,188 @@
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Frame pacing statistics for the render loop.
+ *
+ * Frame, render and simulation tick times go into one-second histogram
+ * windows; the overlay shows the last completed window. Every frame is also
+ * appended to a fixed-size ring that can be exported as a CSV time series.
+ * Only the FX thread may call into this class.
+ */
+public class FrameStats {
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+    private static final int HISTORY_FRAMES = 60 * 60 * 10; // Ten minutes at 60 fps
+    private static final Font OVERLAY_FONT = Font.font("Monospaced", 12);
+
+    // [0] is being recorded, [1] is the last completed window
+    private final LatencyHistogram[] frameTimes = { new LatencyHistogram(), new LatencyHistogram() };
+    private final LatencyHistogram[] renderTimes = { new LatencyHistogram(), new LatencyHistogram() };
+    private final LatencyHistogram[] tickTimes = { new LatencyHistogram(), new LatencyHistogram() };
+    private long lastTick = -1;
+    private long windowStart = 0;
+    private double fps = 0;
+
+    // CSV history ring
+    private final long[] historyTime = new long[HISTORY_FRAMES];
+    private final long[] historyFrame = new long[HISTORY_FRAMES];
+    private final long[] historyRender = new long[HISTORY_FRAMES];
+    private final long[] historyTick = new long[HISTORY_FRAMES];
+    private final int[] historyFish = new int[HISTORY_FRAMES];
+    private final int[] historyFood = new int[HISTORY_FRAMES];
+    private final int[] historyParticles = new int[HISTORY_FRAMES];
+    private final int[] historyDrawn = new int[HISTORY_FRAMES];
+    private long frames = 0;
+    private final long startNanos = System.nanoTime();
+
+    private int fish, food, particles;
+    private long windowCandidates, windowDrawn; // Culling totals for the active window
+    private double cullRatio = 0;
+
+    /**
+     * Records one rendered frame.
+     *
+     * @param frameNanos  time since the previous frame started
+     * @param renderNanos time spent in render
+     * @param tick        number of the simulation tick that was drawn
+     * @param tickNanos   time the simulation spent computing that tick
+     * @param candidates  entities tested against the view
+     * @param drawn       entities that passed culling into the draw list
+     */
+    public void recordFrame(long now, long frameNanos, long renderNanos, long tick, long tickNanos, int fish,
+            int food, int particles, int candidates, int drawn) {
+        if (windowStart == 0)
+            windowStart = now;
+        if (frameNanos > 0)
+            frameTimes[0].record(frameNanos);
+        renderTimes[0].record(renderNanos);
+        if (tick != lastTick) {
+            tickTimes[0].record(tickNanos); // Ticks skipped between two frames are not sampled
+            lastTick = tick;
+        }
+
+        windowCandidates += candidates;
+        windowDrawn += drawn;
+
+        if (now - windowStart >= WINDOW_NANOS) {
+            fps = frameTimes[0].getCount() * 1e9 / (now - windowStart);
+            cullRatio = windowCandidates == 0 ? 0 : 1.0 - windowDrawn / (double) windowCandidates;
+            windowCandidates = 0;
+            windowDrawn = 0;
+            rotate(frameTimes);
+            rotate(renderTimes);
+            rotate(tickTimes);
+            windowStart = now;
+        }
+
+        int slot = (int) (frames % HISTORY_FRAMES);
+        historyTime[slot] = now - startNanos;
+        historyFrame[slot] = frameNanos;
+        historyRender[slot] = renderNanos;
+        historyTick[slot] = tickNanos;
+        historyFish[slot] = fish;
+        historyFood[slot] = food;
+        historyParticles[slot] = particles;
+        historyDrawn[slot] = drawn;
+        frames++;
+
+        this.fish = fish;
+        this.food = food;
+        this.particles = particles;
+    }
+
+    private static void rotate(LatencyHistogram[] window) {
+        LatencyHistogram completed = window[0];
+        window[0] = window[1];
+        window[1] = completed;
+        window[0].reset();
+    }
+
+    /**
+     * Draws the statistics box in the top-right corner.
+     */
+    public void drawOverlay(GraphicsContext gc, double canvasWidth) {
+        double w = 300;
+        double h = 126;
+        double x = canvasWidth - w - 15;
+        double y = 15;
+
+        gc.setGlobalAlpha(0.7);
+        gc.setFill(Color.rgb(10, 10, 20));
+        gc.fillRoundRect(x, y, w, h, 12, 12);
+        gc.setGlobalAlpha(1.0);
+
+        gc.setFill(Color.WHITE);
+        gc.setFont(OVERLAY_FONT);
+        double line = y + 20;
+        gc.fillText(String.format(Locale.ROOT, "FPS %5.1f        p50    p99    max", fps), x + 10, line);
+        gc.fillText(row("frame ", frameTimes[1]), x + 10, line += 16);
+        gc.fillText(row("render", renderTimes[1]), x + 10, line += 16);
+        gc.fillText(row("tick  ", tickTimes[1]), x + 10, line += 16);
+        gc.fillText(String.format(Locale.ROOT, "fish %d  food %d  particles %d", fish, food, particles), x + 10,
+                line += 20);
+        gc.fillText(String.format(Locale.ROOT, "culled %.0f%% of entities off-screen", cullRatio * 100), x + 10,
+                line += 16);
+    }
+
+    private static String row(String label, LatencyHistogram h) {
+        return String.format(Locale.ROOT, "%s ms  %6.2f %6.2f %6.2f", label, h.getPercentile(50) / 1e6,
+                h.getPercentile(99) / 1e6, h.getMax() / 1e6);
+    }
+
+    /**
+     * Copies the recorded frame history and writes it, oldest first, as CSV on
+     * a background thread so the render loop does not stall on disk I/O.
+     */
+    public void exportCsv(Path file) {
+        int count = (int) Math.min(frames, HISTORY_FRAMES);
+        long first = frames - count;
+        long[][] columns = new long[9][count];
+        for (int n = 0; n < count; n++) {
+            int i = (int) ((first + n) % HISTORY_FRAMES);
+            columns[0][n] = first + n;
+            columns[1][n] = historyTime[i];
+            columns[2][n] = historyFrame[i];
+            columns[3][n] = historyRender[i];
+            columns[4][n] = historyTick[i];
+            columns[5][n] = historyFish[i];
+            columns[6][n] = historyFood[i];
+            columns[7][n] = historyParticles[i];
+            columns[8][n] = historyDrawn[i];
+        }
+
+        Thread writer = new Thread(() -> {
+            try {
+                writeCsv(file, columns, count);
+                System.out.println("Frame times exported to " + file.toAbsolutePath());
+            } catch (IOException e) {
+                System.err.println("Error exporting frame times: " + e.getMessage());
+            }
+        }, "aquarium-csv-export");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private static void writeCsv(Path file, long[][] columns, int count) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            out.write("frame,time_ms,frame_ms,render_ms,tick_ms,fish,food,particles,drawn");
+            out.newLine();
+            for (int n = 0; n < count; n++) {
+                out.write(columns[0][n] + "," + ms(columns[1][n]) + "," + ms(columns[2][n]) + ","
+                        + ms(columns[3][n]) + "," + ms(columns[4][n]) + "," + columns[5][n] + "," + columns[6][n]
+                        + "," + columns[7][n] + "," + columns[8][n]);
+                out.newLine();
+            }
+        }
+    }
+
+    private static String ms(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,213 @@
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the simulation without a display and reports its throughput.
+ *
+ * Usage: {@code HeadlessRunner --fish=10000 --food=50 --particles=2000 --ticks=2000 --warmup=300 --workers=8 --vector=1}
+ *
+ * Fish sizes come from the sprite headers only, so no images are decoded and
+ * the JavaFX toolkit is never started. The javafx-base and javafx-graphics
+ * jars must still be on the classpath, because FishPopulation and
+ * ParticleSystem hold their own draw code and reference JavaFX types; without
+ * them {@code Simulation} fails to load with {@code NoClassDefFoundError}.
+ * {@code mvn compile exec:java@headless} provides them. Food and particles are topped back up
+ * to the requested counts before every tick so the load stays constant.
+ * Everything random comes from {@code --seed}, so two runs with the same
+ * seed and options end in the same state.
+ *
+ * With {@code --replay=session.bin} the runner instead replays a log written
+ * by {@link InputRecorder}: no warmup or top-ups, just the recorded session
+ * stepped as fast as possible, by default until its last command. The final
+ * state hash matches between runs of the same seed and input.
+ */
+public class HeadlessRunner {
+    private static final double WIDTH = 1024;
+    private static final double HEIGHT = 600;
+    private static final double DEFAULT_SPRITE_SIZE = 500;
+
+    public static void main(String[] args) {
+        Map<String, String> options = parseArgs(args);
+        int fishCount = intOption(options, "fish", 10_000);
+        int foodCount = intOption(options, "food", 50);
+        int particleCount = intOption(options, "particles", 2_000);
+        int ticks = intOption(options, "ticks", 2_000);
+        int warmup = intOption(options, "warmup", 300);
+        int workers = intOption(options, "workers", Runtime.getRuntime().availableProcessors());
+        IntegrationKernel.useVector(intOption(options, "vector", 1) != 0);
+        long seed = longOption(options, "seed", System.nanoTime());
+
+        if (options.containsKey("replay")) {
+            replay(options.get("replay"), options, workers);
+            return;
+        }
+
+        List<double[]> sizes = readSpriteSizes();
+        double[] spriteWidths = new double[sizes.size()];
+        double[] spriteHeights = new double[sizes.size()];
+        for (int i = 0; i < sizes.size(); i++) {
+            spriteWidths[i] = sizes.get(i)[0];
+            spriteHeights[i] = sizes.get(i)[1];
+        }
+
+        // Headroom for bubbles, plankton and crumbs spawned on top of the fixed load
+        Simulation simulation = new Simulation(WIDTH, HEIGHT, particleCount + 1024, workers, seed);
+        simulation.spawnFish(fishCount, spriteWidths, spriteHeights);
+        SeededRandom random = new SeededRandom(seed + 1); // Top-ups draw apart from the simulation's own stream
+
+        System.out.println("Headless run: fish=" + fishCount + " food=" + foodCount + " particles=" + particleCount
+                + " workers=" + workers + " sprites=" + spriteWidths.length
+                + " kernel=" + IntegrationKernel.get().getName() + " seed=" + seed);
+
+        for (int i = 0; i < warmup; i++) {
+            topUp(simulation, random, foodCount, particleCount);
+            simulation.step(Simulation.TICK_DT);
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long allocatedBefore = threads.getTotalThreadAllocatedBytes();
+        long entityTicks = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            topUp(simulation, random, foodCount, particleCount);
+            entityTicks += simulation.getFish().size() + simulation.getFood().size()
+                    + simulation.getParticles().size();
+            simulation.step(Simulation.TICK_DT);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getTotalThreadAllocatedBytes() - allocatedBefore;
+        report(simulation, ticks, elapsed, entityTicks, allocated);
+    }
+
+    // Steps a recorded session without live input
+    private static void replay(String path, Map<String, String> options, int workers) {
+        InputReplay replay;
+        try {
+            replay = InputReplay.read(Paths.get(path), readSpriteSizes().size());
+        } catch (IOException e) {
+            System.err.println("Could not replay " + path + ": " + e.getMessage());
+            return;
+        }
+        Simulation simulation = replay.createSimulation(workers);
+        int ticks = intOption(options, "ticks", (int) replay.getLastTick() + 1);
+        System.out.println("Headless replay: " + path + " commands=" + replay.getCommandCount() + " ticks=" + ticks
+                + " workers=" + workers + " kernel=" + IntegrationKernel.get().getName() + " seed="
+                + replay.getSeed());
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long allocatedBefore = threads.getTotalThreadAllocatedBytes();
+        long entityTicks = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            entityTicks += simulation.getFish().size() + simulation.getFood().size()
+                    + simulation.getParticles().size();
+            simulation.step(Simulation.TICK_DT);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getTotalThreadAllocatedBytes() - allocatedBefore;
+        report(simulation, ticks, elapsed, entityTicks, allocated);
+    }
+
+    private static void report(Simulation simulation, int ticks, long elapsed, long entityTicks, long allocated) {
+        long stateHash = simulation.stateHash();
+        simulation.shutdown();
+
+        double seconds = elapsed / 1e9;
+        System.out.printf("ticks/sec:        %.1f%n", ticks / seconds);
+        System.out.printf("ms/tick:          %.3f%n", elapsed / 1e6 / ticks);
+        System.out.printf("ns/entity:        %.1f%n", (double) elapsed / Math.max(1, entityTicks));
+        if (allocated >= 0) {
+            System.out.printf("allocation rate:  %.2f MB/s (%.0f bytes/tick)%n", allocated / seconds / 1e6,
+                    (double) allocated / ticks);
+        }
+        System.out.printf("state hash:       %016x%n", stateHash);
+    }
+
+    private static void topUp(Simulation simulation, SeededRandom random, int foodCount, int particleCount) {
+        while (simulation.getFood().size() < foodCount) {
+            simulation.addFood(random.nextDouble() * WIDTH, random.nextDouble() * HEIGHT * 0.5,
+                    random.nextDouble() * 400);
+        }
+        ParticleSystem particles = simulation.getParticles();
+        while (particles.size() < particleCount) {
+            if (!particles.spawn(random.nextDouble() * WIDTH, random.nextDouble() * HEIGHT, random.nextDouble() * 500,
+                    Particle.Type.PLANKTON))
+                break;
+        }
+    }
+
+    // Reads width and height from each fish sprite header without decoding pixels
+    private static List<double[]> readSpriteSizes() {
+        List<double[]> sizes = new ArrayList<>();
+        for (int i = 1; i <= 13; i++) {
+            File file = new File("fish_type" + i + ".png");
+            if (!file.exists())
+                continue;
+            try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+                Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+                if (!readers.hasNext())
+                    continue;
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(in);
+                    sizes.add(new double[] { reader.getWidth(0), reader.getHeight(0) });
+                } finally {
+                    reader.dispose();
+                }
+            } catch (Exception e) {
+                System.err.println("Error reading " + file + ": " + e.getMessage());
+            }
+        }
+        if (sizes.isEmpty())
+            sizes.add(new double[] { DEFAULT_SPRITE_SIZE, DEFAULT_SPRITE_SIZE });
+        return sizes;
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--"))
+                continue;
+            int eq = arg.indexOf('=');
+            if (eq > 2)
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for --" + name + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    private static long longOption(Map<String, String> options, String name, long defaultValue) {
+        String value = options.get(name);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for --" + name + ": " + value);
+            return defaultValue;
+        }
+    }
+}
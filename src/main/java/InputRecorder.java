@@ -0,0 +1,65 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Logs the commands a {@link Simulation} applies, each stamped with its tick,
+ * so the session can be reproduced with {@link InputReplay}.
+ *
+ * File format (big-endian): magic, version, the simulation's seed, tank size
+ * and particle capacity, then one record per command: the tick followed by
+ * the command type and only the fields that type uses. Records are flushed as
+ * they are written so a session that ends in a crash is still replayable up
+ * to that point. Only the simulation thread may call {@link #record}.
+ */
+public class InputRecorder implements AutoCloseable {
+    static final int MAGIC = 0x4151494E; // "AQIN"
+    static final int VERSION = 1;
+
+    private final Path file;
+    private final DataOutputStream out;
+    private boolean failed = false;
+
+    /**
+     * Starts a log for a fresh simulation, which must have been created with
+     * the same arguments that are recorded here.
+     */
+    public InputRecorder(Path file, long seed, double width, double height, int particleCapacity)
+            throws IOException {
+        this.file = file;
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(seed);
+        out.writeDouble(width);
+        out.writeDouble(height);
+        out.writeInt(particleCapacity);
+        out.flush();
+    }
+
+    /** Appends one command applied at {@code tick}. */
+    public void record(long tick, Simulation.Command command) {
+        if (failed)
+            return;
+        try {
+            out.writeLong(tick);
+            command.write(out);
+            out.flush();
+        } catch (IOException e) {
+            failed = true; // Keep the simulation running; the log just stops here
+            System.err.println("Stopped recording input to " + file + ": " + e.getMessage());
+        }
+    }
+
+    /** Closes the log. The simulation thread must already be stopped. */
+    @Override
+    public void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            System.err.println("Could not close input log " + file + ": " + e.getMessage());
+        }
+    }
+}
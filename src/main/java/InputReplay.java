@@ -0,0 +1,125 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A log written by {@link InputRecorder}, fed back to a {@link Simulation}
+ * tick by tick.
+ *
+ * The whole log is read up front so replaying never touches the disk. Build
+ * the simulation with {@link #createSimulation} so its seed and sizes match
+ * the recorded session; each command is then applied at the same tick as
+ * before, which reproduces the session exactly. A log cut short by a crash
+ * replays up to its last complete record. A log that spawns fish of sprite
+ * types the current assets do not have is rejected when read. Only the
+ * simulation thread may call {@link #next}.
+ */
+public class InputReplay {
+    private final long seed;
+    private final double width;
+    private final double height;
+    private final int particleCapacity;
+    private final long[] ticks;
+    private final Simulation.Command[] commands;
+    private int position = 0;
+
+    private InputReplay(long seed, double width, double height, int particleCapacity, long[] ticks,
+            Simulation.Command[] commands) {
+        this.seed = seed;
+        this.width = width;
+        this.height = height;
+        this.particleCapacity = particleCapacity;
+        this.ticks = ticks;
+        this.commands = commands;
+    }
+
+    /**
+     * Reads a log.
+     *
+     * @param spriteTypes number of fish sprite types loaded now
+     * @throws IOException if the file cannot be read, is not an input log of
+     *                     this version or spawns sprite types outside
+     *                     [0, spriteTypes)
+     */
+    public static InputReplay read(Path file, int spriteTypes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != InputRecorder.MAGIC)
+                throw new IOException("Not an input log");
+            int version = in.readInt();
+            if (version != InputRecorder.VERSION)
+                throw new IOException("Unsupported input log version " + version);
+            long seed = in.readLong();
+            double width = in.readDouble();
+            double height = in.readDouble();
+            int particleCapacity = in.readInt();
+
+            List<Long> ticks = new ArrayList<>();
+            List<Simulation.Command> commands = new ArrayList<>();
+            while (true) {
+                try {
+                    long tick = in.readLong();
+                    Simulation.Command command = Simulation.Command.read(in);
+                    checkSpawn(command, spriteTypes);
+                    ticks.add(tick);
+                    commands.add(command);
+                } catch (EOFException e) {
+                    break; // End of log, or a record cut off mid-write
+                }
+            }
+            long[] tickArray = new long[ticks.size()];
+            for (int i = 0; i < tickArray.length; i++)
+                tickArray[i] = ticks.get(i);
+            return new InputReplay(seed, width, height, particleCapacity, tickArray,
+                    commands.toArray(new Simulation.Command[0]));
+        }
+    }
+
+    private static void checkSpawn(Simulation.Command command, int spriteTypes) throws IOException {
+        if (command.type != Simulation.Command.Type.SPAWN_FISH)
+            return;
+        if (command.spriteType < 0 || command.spriteType >= spriteTypes)
+            throw new IOException("Input log spawns fish of sprite type " + command.spriteType + " but only "
+                    + spriteTypes + " sprite types are loaded");
+        if (command.count < 0)
+            throw new IOException("Input log spawns " + command.count + " fish");
+    }
+
+    /** A fresh simulation matching the recorded one, with this replay attached. */
+    public Simulation createSimulation(int workers) {
+        Simulation simulation = new Simulation(width, height, particleCapacity, workers, seed);
+        simulation.setReplay(this);
+        return simulation;
+    }
+
+    /**
+     * The next command due at or before {@code tick}, or null once this
+     * tick's commands have all been returned.
+     */
+    public Simulation.Command next(long tick) {
+        if (position == commands.length || ticks[position] > tick)
+            return null;
+        return commands[position++];
+    }
+
+    public boolean isFinished() {
+        return position == commands.length;
+    }
+
+    /** Tick of the last recorded command, or -1 if there are none. */
+    public long getLastTick() {
+        return ticks.length == 0 ? -1 : ticks[ticks.length - 1];
+    }
+
+    public int getCommandCount() {
+        return commands.length;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Bulk arithmetic over primitive entity arrays: position integration and the
+ * fish velocity clamp.
+ *
+ * Two implementations exist: a plain scalar loop and {@code VectorKernel},
+ * which uses the incubating Vector API. The vector kernel lives in its own
+ * class and is only loaded reflectively, so the application still runs on
+ * the scalar kernel when the JVM was started without
+ * {@code --add-modules jdk.incubator.vector}. Both kernels produce
+ * bit-identical results.
+ *
+ * The vector kernel is used by default when available; set the system
+ * property {@code aquarium.vector=false} or call {@link #useVector(boolean)}
+ * to force the scalar one. Until the JIT has compiled the vector kernel its
+ * vectors are real objects, so the first ticks allocate; a warmed-up kernel
+ * does not.
+ */
+public abstract class IntegrationKernel {
+    private static volatile IntegrationKernel current = create(
+            Boolean.parseBoolean(System.getProperty("aquarium.vector", "true")));
+
+    /** The kernel currently in use. */
+    public static IntegrationKernel get() {
+        return current;
+    }
+
+    /**
+     * Switches between the vector and scalar kernels. Falls back to scalar if
+     * the Vector API is not available.
+     */
+    public static void useVector(boolean enabled) {
+        current = create(enabled);
+    }
+
+    private static IntegrationKernel create(boolean vector) {
+        if (vector) {
+            try {
+                return (IntegrationKernel) Class.forName("VectorKernel").getDeclaredConstructor().newInstance();
+            } catch (Throwable e) {
+                // Module not added or not supported on this JVM
+            }
+        }
+        return new Scalar();
+    }
+
+    /** Name for logs and benchmark output. */
+    public abstract String getName();
+
+    /** {@code a[i] += d} for every i in [from, to). */
+    public abstract void add(double[] a, double d, int from, int to);
+
+    /** {@code x[i] += v[i] * dt} for every i in [from, to). */
+    public abstract void integrate(double[] x, double[] v, double dt, int from, int to);
+
+    /**
+     * Adds acceleration to velocity, records the resulting speed, clamps the
+     * velocity to {@code limit} and moves the position by one velocity step,
+     * for every i in [from, to).
+     */
+    public abstract void integrateClamped(double[] x, double[] y, double[] z, double[] vx, double[] vy,
+            double[] vz, double[] ax, double[] ay, double[] az, double[] limit, double[] speed, int from, int to);
+
+    static void integrateClamped(double[] x, double[] y, double[] z, double[] vx, double[] vy, double[] vz,
+            double[] ax, double[] ay, double[] az, double[] limit, double[] speed, int i) {
+        vx[i] += ax[i];
+        vy[i] += ay[i];
+        vz[i] += az[i];
+
+        double s = Math.sqrt(vx[i] * vx[i] + vy[i] * vy[i] + vz[i] * vz[i]);
+        speed[i] = s;
+        if (s > limit[i]) {
+            double scale = limit[i] / s;
+            vx[i] *= scale;
+            vy[i] *= scale;
+            vz[i] *= scale;
+        }
+
+        x[i] += vx[i];
+        y[i] += vy[i];
+        z[i] += vz[i];
+    }
+
+    private static final class Scalar extends IntegrationKernel {
+        @Override
+        public String getName() {
+            return "scalar";
+        }
+
+        @Override
+        public void add(double[] a, double d, int from, int to) {
+            for (int i = from; i < to; i++)
+                a[i] += d;
+        }
+
+        @Override
+        public void integrate(double[] x, double[] v, double dt, int from, int to) {
+            for (int i = from; i < to; i++)
+                x[i] += v[i] * dt;
+        }
+
+        @Override
+        public void integrateClamped(double[] x, double[] y, double[] z, double[] vx, double[] vy, double[] vz,
+                double[] ax, double[] ay, double[] az, double[] limit, double[] speed, int from, int to) {
+            for (int i = from; i < to; i++)
+                integrateClamped(x, y, z, vx, vy, vz, ax, ay, az, limit, speed, i);
+        }
+    }
+}
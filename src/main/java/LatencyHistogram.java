@@ -0,0 +1,79 @@
+import java.util.Arrays;
+
+/**
+ * Fixed-memory, log-linear histogram of nanosecond durations.
+ *
+ * Values below 64 ns are counted exactly; above that every power of two is
+ * split into 32 sub-buckets, giving about 3% relative precision up to 2^41 ns
+ * (about 36 minutes) with a little over a thousand counters. Longer values
+ * are clamped to the top bucket. Recording never allocates. Not thread-safe:
+ * use one writer per instance.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    private static final int MAX_SHIFT = 35;
+    private static final long MAX_VALUE = ((long) (2 * SUB_BUCKETS) << MAX_SHIFT) - 1; // 2^(5 + 1 + 35) - 1 ns
+
+    private final long[] counts = new long[LINEAR_LIMIT + MAX_SHIFT * SUB_BUCKETS];
+    private long total = 0;
+    private long max = 0;
+
+    public void record(long nanos) {
+        long v = Math.max(0, Math.min(nanos, MAX_VALUE));
+        counts[indexOf(v)]++;
+        total++;
+        if (v > max)
+            max = v;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        total = 0;
+        max = 0;
+    }
+
+    public long getCount() {
+        return total;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the value at the given percentile (0-100), or 0 if empty. The
+     * result is the upper bound of the bucket holding that rank, capped at
+     * the recorded maximum.
+     */
+    public long getPercentile(double percentile) {
+        if (total == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(upperBound(i), max);
+        }
+        return max;
+    }
+
+    private static int indexOf(long v) {
+        if (v < LINEAR_LIMIT)
+            return (int) v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS; // >= 1
+        int top = (int) (v >>> shift); // in [SUB_BUCKETS, 2 * SUB_BUCKETS)
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (top - SUB_BUCKETS);
+    }
+
+    private static long upperBound(int index) {
+        if (index < LINEAR_LIMIT)
+            return index;
+        int k = index - LINEAR_LIMIT;
+        int shift = k / SUB_BUCKETS + 1;
+        long top = k % SUB_BUCKETS + SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+}
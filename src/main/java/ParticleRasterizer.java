@@ -0,0 +1,267 @@
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Software point-sprite renderer for dense particle fields.
+ *
+ * Instead of one {@code fillOval} per particle, particles are splatted as
+ * anti-aliased discs into premultiplied ARGB pixel arrays that back two
+ * images: one for particles behind the camera pivot and one for those in
+ * front of it, so the haze still layers around the fish. Bubbles and plankton
+ * blend additively, crumbs with normal alpha blending. The screen is cut into
+ * horizontal bands that can be rasterised in parallel without sharing any
+ * pixels. Each layer is rasterised inside its {@link PixelBuffer#updateBuffer}
+ * callback, as JavaFX requires for changes to the buffer, and each image is
+ * then composited with a single {@code drawImage}.
+ *
+ * Must be driven from the FX thread.
+ */
+public class ParticleRasterizer {
+    private static final int BANDS_PER_WORKER = 2;
+    private static final int FAR = 0;
+    private static final int NEAR = 1;
+
+    private final int width;
+    private final int height;
+    private final int[][] pixels = new int[2][];
+    private final IntBuffer[] buffers = new IntBuffer[2];
+    private final PixelBuffer<IntBuffer> farPixels;
+    private final PixelBuffer<IntBuffer> nearPixels;
+    private final WritableImage[] images = new WritableImage[2];
+    private final Rectangle2D fullRect;
+
+    private final int workers;
+    private final ForkJoinPool pool;
+    private final int bands;
+
+    // Screen-space splats for the current frame, per layer
+    private final int[] splatCount = new int[2];
+    private float[][] splatX = new float[2][0];
+    private float[][] splatY = new float[2][0];
+    private float[][] splatRadius = new float[2][0];
+    private int[][] splatColor = new int[2][0];
+    private boolean[][] splatAdditive = new boolean[2][0];
+
+    /**
+     * @param workers number of threads to rasterise with; 1 or less runs on
+     *                the calling thread
+     */
+    public ParticleRasterizer(int width, int height, int workers) {
+        this.width = width;
+        this.height = height;
+        this.workers = Math.max(1, workers);
+        this.pool = this.workers > 1 ? new ForkJoinPool(this.workers) : null;
+        this.bands = this.workers > 1 ? Math.min(height, this.workers * BANDS_PER_WORKER) : 1;
+
+        this.fullRect = new Rectangle2D(0, 0, width, height);
+        farPixels = createLayer(FAR);
+        nearPixels = createLayer(NEAR);
+    }
+
+    private PixelBuffer<IntBuffer> createLayer(int layer) {
+        pixels[layer] = new int[width * height];
+        buffers[layer] = ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.nativeOrder())
+                .asIntBuffer();
+        PixelBuffer<IntBuffer> pixelBuffer = new PixelBuffer<>(width, height, buffers[layer],
+                PixelFormat.getIntArgbPreInstance());
+        images[layer] = new WritableImage(pixelBuffer);
+        return pixelBuffer;
+    }
+
+    /**
+     * Rasterises every visible particle. Particles deeper than
+     * {@code splitDepth} go to the far image, the rest to the near image.
+     */
+    public void render(ParticleSystem particles, Projection projection, double splitDepth) {
+        // 1. Serial pass: screen-space disc and packed color per particle
+        int n = particles.size();
+        ensureCapacity(n);
+        splatCount[FAR] = 0;
+        splatCount[NEAR] = 0;
+        for (int i = 0; i < n; i++) {
+            if (!projection.isVisible(i))
+                continue;
+            float radius = (float) (particles.getSize(i) * projection.getScale(i) / 2);
+            float x = (float) projection.getX(i);
+            float y = (float) projection.getY(i);
+            if (x + radius < 0 || x - radius >= width || y + radius < 0 || y - radius >= height)
+                continue;
+
+            Particle.Type type = particles.getType(i);
+            int alpha = (int) Math.round((type.argb >>> 24) * particles.getLifeFraction(i));
+            if (alpha <= 0)
+                continue;
+
+            int layer = projection.getDepth(i) > splitDepth ? FAR : NEAR;
+            int s = splatCount[layer]++;
+            splatX[layer][s] = x;
+            splatY[layer][s] = y;
+            splatRadius[layer][s] = radius;
+            splatColor[layer][s] = (alpha << 24) | (type.argb & 0xFFFFFF);
+            splatAdditive[layer][s] = type != Particle.Type.CRUMB;
+        }
+
+        // 2. Clear, splat and upload each layer while its buffer is open for update
+        farPixels.updateBuffer(buffer -> rasterise(FAR));
+        nearPixels.updateBuffer(buffer -> rasterise(NEAR));
+    }
+
+    // Fills one layer's buffer band by band and returns the region that changed
+    private Rectangle2D rasterise(int layer) {
+        if (pool == null)
+            renderBand(0, layer);
+        else
+            pool.invoke(new BandTask(0, bands, layer));
+        return fullRect;
+    }
+
+    private void ensureCapacity(int n) {
+        if (splatX[0].length >= n)
+            return;
+        int capacity = Math.max(n, splatX[0].length * 2);
+        for (int layer = 0; layer < 2; layer++) {
+            splatX[layer] = new float[capacity];
+            splatY[layer] = new float[capacity];
+            splatRadius[layer] = new float[capacity];
+            splatColor[layer] = new int[capacity];
+            splatAdditive[layer] = new boolean[capacity];
+        }
+    }
+
+    private void renderBand(int band, int layer) {
+        int top = (int) ((long) height * band / bands);
+        int bottom = (int) ((long) height * (band + 1) / bands);
+        int[] dst = pixels[layer];
+        Arrays.fill(dst, top * width, bottom * width, 0);
+        for (int s = 0; s < splatCount[layer]; s++) {
+            splat(dst, top, bottom, splatX[layer][s], splatY[layer][s], splatRadius[layer][s],
+                    splatColor[layer][s], splatAdditive[layer][s]);
+        }
+        buffers[layer].put(top * width, dst, top * width, (bottom - top) * width);
+    }
+
+    // Anti-aliased disc clipped to rows [top, bottom)
+    private void splat(int[] dst, int top, int bottom, float cx, float cy, float radius, int color,
+            boolean additive) {
+        int y0 = Math.max(top, (int) Math.floor(cy - radius));
+        int y1 = Math.min(bottom - 1, (int) Math.ceil(cy + radius));
+        if (y0 > y1)
+            return;
+        int x0 = Math.max(0, (int) Math.floor(cx - radius));
+        int x1 = Math.min(width - 1, (int) Math.ceil(cx + radius));
+
+        int alpha = color >>> 24;
+        int r = (color >> 16) & 0xFF;
+        int g = (color >> 8) & 0xFF;
+        int b = color & 0xFF;
+
+        // Sub-pixel particles: one pixel weighted by the disc area
+        if (radius < 0.5f) {
+            int px = (int) cx;
+            int py = (int) cy;
+            if (py < top || py >= bottom || px < 0 || px >= width)
+                return;
+            float coverage = (float) (Math.PI * radius * radius);
+            blend(dst, py * width + px, alpha * coverage, r, g, b, additive);
+            return;
+        }
+
+        // Only pixels within half a pixel of the rim need a square root
+        float inner = Math.max(0, radius - 0.5f);
+        float innerSq = inner * inner;
+        float outerSq = (radius + 0.5f) * (radius + 0.5f);
+        for (int y = y0; y <= y1; y++) {
+            float dy = y + 0.5f - cy;
+            int row = y * width;
+            for (int x = x0; x <= x1; x++) {
+                float dx = x + 0.5f - cx;
+                float distSq = dx * dx + dy * dy;
+                if (distSq >= outerSq)
+                    continue;
+                float coverage = distSq <= innerSq ? 1f : radius + 0.5f - (float) Math.sqrt(distSq);
+                blend(dst, row + x, alpha * coverage, r, g, b, additive);
+            }
+        }
+    }
+
+    private static void blend(int[] dst, int index, float alpha, int r, int g, int b, boolean additive) {
+        int a = (int) alpha;
+        if (a <= 0)
+            return;
+        // Premultiplied source
+        int sr = r * a / 255;
+        int sg = g * a / 255;
+        int sb = b * a / 255;
+
+        int d = dst[index];
+        int da = d >>> 24;
+        int dr = (d >> 16) & 0xFF;
+        int dg = (d >> 8) & 0xFF;
+        int db = d & 0xFF;
+        if (additive) {
+            da = Math.min(255, da + a);
+            dr = Math.min(da, dr + sr);
+            dg = Math.min(da, dg + sg);
+            db = Math.min(da, db + sb);
+        } else {
+            int inv = 255 - a;
+            da = a + da * inv / 255;
+            dr = sr + dr * inv / 255;
+            dg = sg + dg * inv / 255;
+            db = sb + db * inv / 255;
+        }
+        dst[index] = (da << 24) | (dr << 16) | (dg << 8) | db;
+    }
+
+    /** Particles behind the split depth; draw before the entities. */
+    public Image getFarImage() {
+        return images[FAR];
+    }
+
+    /** Particles in front of the split depth; draw after the entities. */
+    public Image getNearImage() {
+        return images[NEAR];
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void shutdown() {
+        if (pool != null)
+            pool.shutdown();
+    }
+
+    private class BandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to;
+        private final int layer;
+
+        BandTask(int from, int to, int layer) {
+            this.from = from;
+            this.to = to;
+            this.layer = layer;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                renderBand(from, layer);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BandTask(from, mid, layer), new BandTask(mid, to, layer));
+        }
+    }
+}
@@ -0,0 +1,359 @@
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Fixed-capacity, allocation-free particle store.
+ *
+ * All particle state lives in preallocated primitive arrays. Live particles
+ * always occupy slots {@code [0, size())}; a dead particle is removed by
+ * moving the last live particle into its slot, so spawning and expiring never
+ * allocate. When the pool is full new spawns are dropped and counted.
+ *
+ * Drawing uses a precomputed palette with one color per type and quantised
+ * opacity, so runs of particles are grouped by palette entry and each group
+ * sets its fill once.
+ */
+public class ParticleSystem {
+    private static final Particle.Type[] TYPES = Particle.Type.values();
+    private static final int OPACITY_BUCKETS = 16;
+    private static final Color[] PALETTE = buildPalette();
+    private static final int SNAPSHOT_BYTES_PER_PARTICLE = 12 * 8 + 1; // Doubles and the type
+
+    private final int capacity;
+    private final SeededRandom random; // Velocities and sizes of new particles
+    private int count = 0;
+    private long dropped = 0;
+
+    private final double[] x, y, z;
+    private final double[] px, py, pz; // Position before the last update, for interpolation
+    private final double[] vx, vy, vz;
+    private final double[] size;
+    private final double[] life;
+    private final double[] maxLife;
+    private final byte[] type;
+
+    // Draw batching scratch, only used by the renderer's copy
+    private int[] bucketStart;
+    private int[] sortedRun;
+
+    public ParticleSystem(int capacity) {
+        this(capacity, new SeededRandom(System.nanoTime()));
+    }
+
+    /**
+     * @param random generator for spawned particles, shared with the caller so
+     *               a seeded simulation stays reproducible
+     */
+    public ParticleSystem(int capacity, SeededRandom random) {
+        this.capacity = Math.max(1, capacity);
+        this.random = random;
+        x = new double[this.capacity];
+        y = new double[this.capacity];
+        z = new double[this.capacity];
+        px = new double[this.capacity];
+        py = new double[this.capacity];
+        pz = new double[this.capacity];
+        vx = new double[this.capacity];
+        vy = new double[this.capacity];
+        vz = new double[this.capacity];
+        size = new double[this.capacity];
+        life = new double[this.capacity];
+        maxLife = new double[this.capacity];
+        type = new byte[this.capacity];
+    }
+
+    /**
+     * Spawns a particle, returning {@code false} if the pool is full.
+     */
+    public boolean spawn(double x, double y, double z, Particle.Type type) {
+        if (count == capacity) {
+            dropped++;
+            return false;
+        }
+        int i = count++;
+        this.x[i] = x;
+        this.y[i] = y;
+        this.z[i] = z;
+        this.px[i] = x;
+        this.py[i] = y;
+        this.pz[i] = z;
+        this.type[i] = (byte) type.ordinal();
+
+        switch (type) {
+            case BUBBLE:
+                vx[i] = (random.nextDouble() - 0.5) * 20;
+                vy[i] = -50 - random.nextDouble() * 50; // Rise up
+                vz[i] = (random.nextDouble() - 0.5) * 20;
+                size[i] = 5 + random.nextDouble() * 10;
+                break;
+            case PLANKTON:
+                vx[i] = (random.nextDouble() - 0.5) * 10;
+                vy[i] = (random.nextDouble() - 0.5) * 10;
+                vz[i] = (random.nextDouble() - 0.5) * 10;
+                size[i] = 1 + random.nextDouble() * 2;
+                break;
+            case CRUMB:
+                vx[i] = (random.nextDouble() - 0.5) * 30;
+                vy[i] = 20 + random.nextDouble() * 30; // Fall down
+                vz[i] = (random.nextDouble() - 0.5) * 30;
+                size[i] = 2 + random.nextDouble() * 3;
+                break;
+        }
+        maxLife[i] = type.maxLife;
+        life[i] = type.maxLife;
+        return true;
+    }
+
+    /**
+     * Advances every live particle and compacts expired ones out of the pool.
+     * The arithmetic runs over whole arrays through the current
+     * {@link IntegrationKernel}; only the bubble wiggle and compaction are
+     * per particle.
+     */
+    public void update(double dt) {
+        int n = count;
+        IntegrationKernel kernel = IntegrationKernel.get();
+        kernel.add(life, -dt, 0, n);
+        System.arraycopy(x, 0, px, 0, n);
+        System.arraycopy(y, 0, py, 0, n);
+        System.arraycopy(z, 0, pz, 0, n);
+
+        // Physics
+        kernel.integrate(x, vx, dt, 0, n);
+        kernel.integrate(y, vy, dt, 0, n);
+        kernel.integrate(z, vz, dt, 0, n);
+
+        int i = 0;
+        while (i < count) {
+            if (life[i] > 0) {
+                // Wiggle for bubbles
+                if (type[i] == Particle.Type.BUBBLE.ordinal()) {
+                    x[i] += Math.sin(y[i] * 0.05 + life[i]) * 20 * dt;
+                }
+                i++;
+            } else {
+                // Swap-remove: the last particle takes this slot and is checked next
+                remove(i);
+            }
+        }
+    }
+
+    private void remove(int i) {
+        int last = --count;
+        if (i == last)
+            return;
+        x[i] = x[last];
+        y[i] = y[last];
+        z[i] = z[last];
+        px[i] = px[last];
+        py[i] = py[last];
+        pz[i] = pz[last];
+        vx[i] = vx[last];
+        vy[i] = vy[last];
+        vz[i] = vz[last];
+        size[i] = size[last];
+        life[i] = life[last];
+        maxLife[i] = maxLife[last];
+        type[i] = type[last];
+    }
+
+    /**
+     * Projects every live particle into {@code out} for this frame.
+     */
+    public void project(Camera camera, Projection out) {
+        camera.project(x, y, z, count, out);
+    }
+
+    /**
+     * Projects every live particle between its previous and current position.
+     */
+    public void project(Camera camera, double alpha, Projection out) {
+        camera.project(px, py, pz, x, y, z, alpha, count, out);
+    }
+
+    /**
+     * Copies every live particle into {@code dst}, which must have at least
+     * this pool's capacity.
+     */
+    public void copyTo(ParticleSystem dst) {
+        dst.count = count;
+        dst.dropped = dropped;
+        System.arraycopy(x, 0, dst.x, 0, count);
+        System.arraycopy(y, 0, dst.y, 0, count);
+        System.arraycopy(z, 0, dst.z, 0, count);
+        System.arraycopy(px, 0, dst.px, 0, count);
+        System.arraycopy(py, 0, dst.py, 0, count);
+        System.arraycopy(pz, 0, dst.pz, 0, count);
+        System.arraycopy(vx, 0, dst.vx, 0, count);
+        System.arraycopy(vy, 0, dst.vy, 0, count);
+        System.arraycopy(vz, 0, dst.vz, 0, count);
+        System.arraycopy(size, 0, dst.size, 0, count);
+        System.arraycopy(life, 0, dst.life, 0, count);
+        System.arraycopy(maxLife, 0, dst.maxLife, 0, count);
+        System.arraycopy(type, 0, dst.type, 0, count);
+    }
+
+    // Bytes write() needs: the count, every double field and the type
+    int snapshotBytes() {
+        return 4 + count * SNAPSHOT_BYTES_PER_PARTICLE;
+    }
+
+    /** Appends every live particle, for a {@link TankSnapshot}. */
+    void write(ByteBuffer out) {
+        out.putInt(count);
+        TankSnapshot.putDoubles(out, x, count);
+        TankSnapshot.putDoubles(out, y, count);
+        TankSnapshot.putDoubles(out, z, count);
+        TankSnapshot.putDoubles(out, px, count);
+        TankSnapshot.putDoubles(out, py, count);
+        TankSnapshot.putDoubles(out, pz, count);
+        TankSnapshot.putDoubles(out, vx, count);
+        TankSnapshot.putDoubles(out, vy, count);
+        TankSnapshot.putDoubles(out, vz, count);
+        TankSnapshot.putDoubles(out, size, count);
+        TankSnapshot.putDoubles(out, life, count);
+        TankSnapshot.putDoubles(out, maxLife, count);
+        out.put(type, 0, count);
+    }
+
+    /**
+     * Replaces the live particles with ones written by {@link #write},
+     * keeping only as many as fit in this pool.
+     */
+    void read(ByteBuffer in) throws IOException {
+        int n = TankSnapshot.readCount(in, SNAPSHOT_BYTES_PER_PARTICLE);
+        count = Math.min(n, capacity);
+        TankSnapshot.getDoubles(in, x, n, count);
+        TankSnapshot.getDoubles(in, y, n, count);
+        TankSnapshot.getDoubles(in, z, n, count);
+        TankSnapshot.getDoubles(in, px, n, count);
+        TankSnapshot.getDoubles(in, py, n, count);
+        TankSnapshot.getDoubles(in, pz, n, count);
+        TankSnapshot.getDoubles(in, vx, n, count);
+        TankSnapshot.getDoubles(in, vy, n, count);
+        TankSnapshot.getDoubles(in, vz, n, count);
+        TankSnapshot.getDoubles(in, size, n, count);
+        TankSnapshot.getDoubles(in, life, n, count);
+        TankSnapshot.getDoubles(in, maxLife, n, count);
+        in.get(type, 0, count);
+        in.position(in.position() + n - count);
+    }
+
+    private static Color[] buildPalette() {
+        Color[] palette = new Color[TYPES.length * OPACITY_BUCKETS];
+        for (int t = 0; t < TYPES.length; t++) {
+            int c = TYPES[t].argb;
+            for (int b = 0; b < OPACITY_BUCKETS; b++) {
+                double opacity = b / (double) (OPACITY_BUCKETS - 1) * ((c >>> 24) / 255.0);
+                palette[t * OPACITY_BUCKETS + b] = Color.rgb((c >> 16) & 0xFF, (c >> 8) & 0xFF, c & 0xFF, opacity);
+            }
+        }
+        return palette;
+    }
+
+    // Palette entry for the particle's type and remaining life; 0 is invisible
+    private int paletteIndex(int i) {
+        int bucket = (int) (life[i] / maxLife[i] * (OPACITY_BUCKETS - 1) + 0.5);
+        return type[i] * OPACITY_BUCKETS + Math.max(0, Math.min(OPACITY_BUCKETS - 1, bucket));
+    }
+
+    public boolean isInView(int i, Projection projection, double viewWidth, double viewHeight) {
+        return projection.isInView(i, 0, 0, size[i] / 2, size[i] / 2, viewWidth, viewHeight);
+    }
+
+    public void draw(GraphicsContext gc, int i, Projection projection) {
+        if (!projection.isVisible(i))
+            return;
+        int p = paletteIndex(i);
+        if (p % OPACITY_BUCKETS == 0)
+            return;
+        gc.setFill(PALETTE[p]);
+        fill(gc, i, projection);
+    }
+
+    /**
+     * Draws {@code n} particles grouped by palette entry, so the fill changes
+     * once per group instead of once per particle. Only use this for particles
+     * that are adjacent in depth order; within such a run the draw order is
+     * not preserved.
+     */
+    public void drawRun(GraphicsContext gc, int[] indices, int n, Projection projection) {
+        if (bucketStart == null) {
+            bucketStart = new int[PALETTE.length + 1];
+            sortedRun = new int[capacity];
+        }
+
+        // 1. Counting sort of the run by palette entry
+        Arrays.fill(bucketStart, 0);
+        for (int k = 0; k < n; k++)
+            bucketStart[paletteIndex(indices[k]) + 1]++;
+        for (int p = 0; p < PALETTE.length; p++)
+            bucketStart[p + 1] += bucketStart[p];
+        for (int k = 0; k < n; k++) {
+            int i = indices[k];
+            sortedRun[bucketStart[paletteIndex(i)]++] = i;
+        }
+
+        // 2. One fill per non-empty group; bucketStart now holds each group's end
+        int start = 0;
+        for (int p = 0; p < PALETTE.length; p++) {
+            int end = bucketStart[p];
+            if (end > start && p % OPACITY_BUCKETS != 0) {
+                gc.setFill(PALETTE[p]);
+                for (int k = start; k < end; k++) {
+                    int i = sortedRun[k];
+                    if (projection.isVisible(i))
+                        fill(gc, i, projection);
+                }
+            }
+            start = end;
+        }
+    }
+
+    private void fill(GraphicsContext gc, int i, Projection projection) {
+        double drawSize = size[i] * projection.getScale(i);
+        gc.fillOval(projection.getX(i) - drawSize / 2, projection.getY(i) - drawSize / 2, drawSize, drawSize);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Number of spawns rejected because the pool was full. */
+    public long getDropped() {
+        return dropped;
+    }
+
+    public Particle.Type getType(int i) {
+        return TYPES[type[i]];
+    }
+
+    public double getSize(int i) {
+        return size[i];
+    }
+
+    /** Remaining life from 1 (just spawned) to 0 (expired). */
+    public double getLifeFraction(int i) {
+        return life[i] / maxLife[i];
+    }
+
+    public double getX(int i) {
+        return x[i];
+    }
+
+    public double getY(int i) {
+        return y[i];
+    }
+
+    public double getZ(int i) {
+        return z[i];
+    }
+}
@@ -0,0 +1,64 @@
+import java.util.Arrays;
+
+/**
+ * Screen-space output buffers filled by {@link Camera#project}.
+ *
+ * Slot {@code i} holds the projected position, perspective scale and
+ * rotated depth of entity {@code i}. A scale of zero marks an entity behind
+ * the near plane.
+ */
+public class Projection {
+    double[] x = new double[0];
+    double[] y = new double[0];
+    double[] scale = new double[0];
+    double[] depth = new double[0];
+
+    void ensureCapacity(int needed) {
+        if (needed <= x.length)
+            return;
+        int capacity = Math.max(needed, x.length * 2);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        scale = Arrays.copyOf(scale, capacity);
+        depth = Arrays.copyOf(depth, capacity);
+    }
+
+    public boolean isVisible(int i) {
+        return scale[i] > 0;
+    }
+
+    /**
+     * True if slot {@code i} is in front of the near plane and a box around
+     * it overlaps the {@code viewWidth} x {@code viewHeight} screen. The box
+     * is given in world units and scaled by the slot's perspective: it is
+     * centered {@code offsetX, offsetY} from the projected position and
+     * extends {@code halfWidth, halfHeight} either side.
+     */
+    public boolean isInView(int i, double offsetX, double offsetY, double halfWidth, double halfHeight,
+            double viewWidth, double viewHeight) {
+        double s = scale[i];
+        if (s <= 0)
+            return false;
+        double cx = x[i] + offsetX * s;
+        double cy = y[i] + offsetY * s;
+        double hw = halfWidth * s;
+        double hh = halfHeight * s;
+        return cx + hw >= 0 && cx - hw <= viewWidth && cy + hh >= 0 && cy - hh <= viewHeight;
+    }
+
+    public double getX(int i) {
+        return x[i];
+    }
+
+    public double getY(int i) {
+        return y[i];
+    }
+
+    public double getScale(int i) {
+        return scale[i];
+    }
+
+    public double getDepth(int i) {
+        return depth[i];
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Holds the render loop near a target frame time by trading visual quality
+ * for speed.
+ *
+ * Quality is a ladder of levels, each scaling particle emission, the fish LOD
+ * thresholds and the entity layer's resolution. It starts at the launch
+ * settings and can climb above them as well as fall below. Every half second the
+ * governor looks at the 90th percentile of frame and render times: two bad
+ * windows in a row step one level down, a longer run of comfortable windows
+ * steps one level up. Stepping up into a level that soon has to be left again
+ * doubles the wait before the next attempt, so a machine that sits on the edge
+ * of a level settles below it instead of flipping back and forth.
+ *
+ * Frame intervals are capped by vsync, so render time is what shows spare
+ * headroom; missed frames are what show overload. Only the FX thread may call
+ * into this class.
+ */
+public class QualityGovernor {
+    private static final int WINDOW_FRAMES = 30;
+    private static final int PERCENTILE = 90;
+
+    // Hysteresis band, as fractions of the target frame time
+    private static final double MISSED_FRAME = 1.15; // Frame p90 above this is overload
+    private static final double RENDER_OVER = 0.9;   // Render p90 above this is overload
+    private static final double RENDER_UNDER = 0.5;  // Render p90 below this leaves room to step up
+
+    private static final int WINDOWS_TO_DROP = 2;
+    private static final int WINDOWS_TO_RAISE = 6;
+    private static final int MAX_WINDOWS_TO_RAISE = 96;
+    private static final int QUICK_FAILURE_WINDOWS = 20; // A raised level failing within this was too ambitious
+
+    // Ladder, lowest quality first. LAUNCH_LEVEL is the launch configuration; the levels above it
+    // spend spare headroom on more particles and closer detail. The entity layer never goes past
+    // full resolution, and the particle pool's capacity caps how much extra emission can show.
+    private static final double[] EMISSION = { 0.25, 0.25, 0.5, 0.5, 0.75, 1.0, 1.5, 2.0 };
+    private static final double[] LOD_SCALE = { 6.0, 4.0, 3.0, 2.0, 1.5, 1.0, 0.75, 0.5 };
+    private static final double[] RENDER_SCALE = { 0.5, 0.75, 0.75, 1.0, 1.0, 1.0, 1.0, 1.0 };
+    public static final int LAUNCH_LEVEL = 5;
+    public static final int MAX_LEVEL = EMISSION.length - 1;
+
+    private final long targetNanos;
+    private final LatencyHistogram frameTimes = new LatencyHistogram();
+    private final LatencyHistogram renderTimes = new LatencyHistogram();
+
+    private int level = LAUNCH_LEVEL;
+    private int overWindows = 0;
+    private int underWindows = 0;
+    private int windowsToRaise = WINDOWS_TO_RAISE;
+    private boolean raisedLast = false; // The last change was a step up
+    private int windowsAtLevel = 0;
+
+    public QualityGovernor(double targetFps) {
+        this.targetNanos = (long) (1e9 / Math.max(1, targetFps));
+    }
+
+    /**
+     * Records one frame and, at the end of a window, decides whether to
+     * change level.
+     *
+     * @param frameNanos  time since the previous frame started, 0 if unknown
+     * @param renderNanos time spent drawing the frame
+     * @return true if the level changed and the settings must be applied
+     */
+    public boolean recordFrame(long frameNanos, long renderNanos) {
+        if (frameNanos > 0)
+            frameTimes.record(frameNanos);
+        renderTimes.record(renderNanos);
+        if (renderTimes.getCount() < WINDOW_FRAMES)
+            return false;
+
+        long frame = frameTimes.getCount() == 0 ? 0 : frameTimes.getPercentile(PERCENTILE);
+        long render = renderTimes.getPercentile(PERCENTILE);
+        frameTimes.reset();
+        renderTimes.reset();
+
+        boolean over = frame > targetNanos * MISSED_FRAME || render > targetNanos * RENDER_OVER;
+        boolean under = !over && render < targetNanos * RENDER_UNDER;
+        windowsAtLevel++;
+        overWindows = over ? overWindows + 1 : 0;
+        underWindows = under ? underWindows + 1 : 0;
+
+        if (overWindows >= WINDOWS_TO_DROP && level > 0) {
+            // A level we just climbed into did not hold: wait longer next time
+            if (raisedLast && windowsAtLevel < QUICK_FAILURE_WINDOWS)
+                windowsToRaise = Math.min(MAX_WINDOWS_TO_RAISE, windowsToRaise * 2);
+            else
+                windowsToRaise = WINDOWS_TO_RAISE;
+            raisedLast = false;
+            return setLevel(level - 1);
+        }
+        if (underWindows >= windowsToRaise && level < MAX_LEVEL) {
+            raisedLast = true;
+            return setLevel(level + 1);
+        }
+        return false;
+    }
+
+    private boolean setLevel(int newLevel) {
+        level = newLevel;
+        windowsAtLevel = 0;
+        overWindows = 0;
+        underWindows = 0;
+        return true;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /** Multiplier on the launch emission rate. */
+    public double getEmissionScale() {
+        return EMISSION[level];
+    }
+
+    /** Multiplier on the launch LOD thresholds; larger drops detail sooner. */
+    public double getLodScale() {
+        return LOD_SCALE[level];
+    }
+
+    /** Fraction of the window's resolution the entity layer is drawn at. */
+    public double getRenderScale() {
+        return RENDER_SCALE[level];
+    }
+
+    public long getTargetNanos() {
+        return targetNanos;
+    }
+}
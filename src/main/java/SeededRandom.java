@@ -0,0 +1,70 @@
+/**
+ * Small, fast pseudo-random generator whose whole state is one {@code long},
+ * so the simulation can be replayed exactly from a seed.
+ *
+ * The generator is xorshift64*. Besides the usual instance methods there are
+ * static helpers that step a bare state value, which lets per-entity streams
+ * live in a primitive array and be advanced from worker threads without
+ * sharing a generator. Not thread-safe.
+ */
+public final class SeededRandom {
+    private static final long MULTIPLIER = 0x2545F4914F6CDD1DL;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private long state;
+
+    public SeededRandom(long seed) {
+        setState(seed(seed));
+    }
+
+    /** A random double in [0, 1). */
+    public double nextDouble() {
+        state = step(state);
+        return toDouble(state);
+    }
+
+    /** A random int in [0, bound). */
+    public int nextInt(int bound) {
+        return (int) (nextDouble() * bound);
+    }
+
+    /** A random long, e.g. to seed another stream. */
+    public long nextLong() {
+        state = step(state);
+        return state * MULTIPLIER;
+    }
+
+    public long getState() {
+        return state;
+    }
+
+    /** Restores a state from {@link #getState()}. */
+    public void setState(long state) {
+        this.state = state == 0 ? seed(0) : state;
+    }
+
+    /**
+     * Spreads an arbitrary seed into a valid, well-mixed state (splitmix64).
+     * Never returns 0, which xorshift cannot leave.
+     */
+    public static long seed(long seed) {
+        long z = seed + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return z == 0 ? 0x9E3779B97F4A7C15L : z;
+    }
+
+    /** Advances a state by one draw. */
+    public static long step(long state) {
+        state ^= state >>> 12;
+        state ^= state << 25;
+        state ^= state >>> 27;
+        return state;
+    }
+
+    /** The double in [0, 1) for a state just returned by {@link #step}. */
+    public static double toDouble(long state) {
+        return ((state * MULTIPLIER) >>> 11) * DOUBLE_UNIT;
+    }
+}
@@ -0,0 +1,613 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The aquarium world: fish, food, particles and the orbiting camera.
+ *
+ * The world only changes inside {@link #step(double)}, which is driven at a
+ * fixed rate by a {@link SimulationThread}. Input from other threads is
+ * posted as {@link Command}s on a lock-free queue and applied at the start of
+ * the next tick.
+ *
+ * Every random choice is drawn from one {@link SeededRandom}, or from per-fish
+ * streams seeded by it, so a seed plus the commands applied at each tick
+ * determine the whole run. {@link InputRecorder} logs those commands and
+ * {@link InputReplay} feeds them back in place of live input.
+ */
+public class Simulation {
+    public static final int TICK_RATE = 60;
+    public static final double TICK_DT = 1.0 / TICK_RATE;
+
+    private static final double FISH_GRID_CELL_SIZE = 100;
+    private static final double BUBBLES_PER_TICK = 0.2;
+    private static final double PLANKTON_PER_TICK = 0.5;
+
+    private final double width;
+    private final double height;
+    private final Camera inputCamera;
+    private final double[] clickWorld = new double[3];
+
+    private long tick = 0;
+
+    private FishPopulation fishes = new FishPopulation();
+    private Food[] foodTargets = new Food[0];
+    private final SpatialHash fishGrid = new SpatialHash(FISH_GRID_CELL_SIZE);
+    private final FishUpdater fishUpdater;
+    private final List<Food> foodList = new ArrayList<>();
+    private final List<Food> droppedFood = new ArrayList<>(); // Dropped this tick, their nearest fish not yet excited
+    private final ParticleSystem particles;
+    private final long seed;
+    private final SeededRandom random;
+
+    private final Queue<Command> commands = new ConcurrentLinkedQueue<>();
+    private double emissionScale = 1.0;
+    private boolean schooling = true;
+
+    private TankSaver saver;
+    private InputRecorder recorder;
+    private InputReplay replay;
+
+    private volatile AudioEngine audio; // Set once sounds have loaded, possibly after the thread started
+    private volatile int eatSound = -1;
+
+    // Camera State
+    private double cameraAngle = 0;
+    private double prevCameraAngle = 0;
+    private double targetCameraAngle = 0;
+
+    // Input state
+    private boolean leftPressed = false;
+    private boolean rightPressed = false;
+
+    // Cinematic Camera State
+    private boolean cinematicMode = false;
+    private double bezierTime = 0;
+    private double camStart = 0;
+    private double camEnd = 0;
+
+    public Simulation(double width, double height, int particleCapacity, int workers) {
+        this(width, height, particleCapacity, workers, System.nanoTime());
+    }
+
+    /**
+     * @param seed seed for every random choice the simulation makes; equal
+     *             seeds and equal commands give identical runs
+     */
+    public Simulation(double width, double height, int particleCapacity, int workers, long seed) {
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+        this.random = new SeededRandom(seed);
+        this.inputCamera = new Camera(width, height);
+        this.particles = new ParticleSystem(particleCapacity, random);
+        this.fishUpdater = new FishUpdater(workers);
+    }
+
+    /**
+     * Sound played when a fish eats. Safe to call from any thread.
+     */
+    public void setEatSound(AudioEngine audio, int sound) {
+        this.eatSound = sound;
+        this.audio = audio;
+    }
+
+    /**
+     * Replaces the population with {@code count} fish of random sprite types.
+     * Must be called before the simulation thread starts.
+     *
+     * @param spriteWidths  source image width for each sprite type
+     * @param spriteHeights source image height for each sprite type
+     */
+    public void spawnFish(int count, double[] spriteWidths, double[] spriteHeights) {
+        fishes = new FishPopulation(count);
+        foodTargets = new Food[count];
+        if (spriteWidths.length == 0)
+            return;
+
+        for (int i = 0; i < count; i++) {
+            int type = random.nextInt(spriteWidths.length);
+            addRandomFish(type, spriteWidths[type], spriteHeights[type]);
+        }
+    }
+
+    // One fish of the given sprite type at a random place, speed and size
+    private void addRandomFish(int type, double spriteWidth, double spriteHeight) {
+        // Spread wider to account for 3D perspective narrowing
+        double startX = random.nextDouble() * (width * 3) - width;
+        double startY = random.nextDouble() * height;
+        double startZ = random.nextDouble() * 1000 - 200; // More depth variation
+
+        double speed = (random.nextDouble() * 0.8 + 0.4);
+        double scale = 0.1 + random.nextDouble() * 0.15;
+
+        fishes.add(type, spriteWidth, spriteHeight, startX, startY, startZ, speed, scale, random.nextLong());
+    }
+
+    /**
+     * Copies the whole tank into {@code snapshot}. Must be called from the
+     * thread that steps the simulation, or while it is stopped.
+     */
+    public void saveTo(TankSnapshot snapshot) {
+        snapshot.tick = tick;
+        snapshot.cameraAngle = cameraAngle;
+        snapshot.prevCameraAngle = prevCameraAngle;
+        snapshot.targetCameraAngle = targetCameraAngle;
+        snapshot.cinematicMode = cinematicMode;
+        snapshot.bezierTime = bezierTime;
+        snapshot.camStart = camStart;
+        snapshot.camEnd = camEnd;
+        snapshot.schooling = schooling;
+        snapshot.emissionScale = emissionScale;
+        snapshot.randomState = random.getState();
+        fishes.copyTo(snapshot.fish);
+        particles.copyTo(snapshot.particles);
+
+        snapshot.ensureFoodCapacity(foodList.size());
+        int n = 0;
+        for (Food food : foodList) {
+            if (!food.isActive())
+                continue; // Eaten this tick, only removed at the start of the next
+            snapshot.foodX[n] = food.getX();
+            snapshot.foodY[n] = food.getY();
+            snapshot.foodZ[n] = food.getZ();
+            snapshot.foodPrevY[n] = food.getPrevY();
+            snapshot.foodSpeedY[n] = food.getSpeedY();
+            n++;
+        }
+        snapshot.foodCount = n;
+    }
+
+    /**
+     * Replaces the whole tank with a saved one. Must be called before the
+     * simulation thread starts.
+     */
+    public void restoreFrom(TankSnapshot snapshot) {
+        tick = snapshot.tick;
+        cameraAngle = snapshot.cameraAngle;
+        prevCameraAngle = snapshot.prevCameraAngle;
+        targetCameraAngle = snapshot.targetCameraAngle;
+        cinematicMode = snapshot.cinematicMode;
+        bezierTime = snapshot.bezierTime;
+        camStart = snapshot.camStart;
+        camEnd = snapshot.camEnd;
+        schooling = snapshot.schooling;
+        emissionScale = snapshot.emissionScale;
+        random.setState(snapshot.randomState);
+
+        fishes = new FishPopulation(snapshot.fish.size());
+        snapshot.fish.copyTo(fishes);
+        foodTargets = new Food[fishes.size()];
+        snapshot.particles.copyTo(particles);
+
+        foodList.clear();
+        for (int i = 0; i < snapshot.foodCount; i++) {
+            foodList.add(new Food(snapshot.foodX[i], snapshot.foodY[i], snapshot.foodZ[i], snapshot.foodPrevY[i],
+                    snapshot.foodSpeedY[i]));
+        }
+    }
+
+    /**
+     * Where {@link Command#save()} hands the tank. Must be called before the
+     * simulation thread starts.
+     */
+    public void setSaver(TankSaver saver) {
+        this.saver = saver;
+    }
+
+    /**
+     * Logs every command applied from now on. Must be called before the
+     * simulation thread starts.
+     */
+    public void setRecorder(InputRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Takes input from {@code replay} instead of {@link #post}; live commands
+     * are discarded. Must be called before the simulation thread starts.
+     */
+    public void setReplay(InputReplay replay) {
+        this.replay = replay;
+    }
+
+    /**
+     * Adds a food pellet at a world position. Must be called from the thread
+     * that steps the simulation.
+     */
+    public void addFood(double x, double y, double z) {
+        foodList.add(new Food(x, y, z));
+    }
+
+    /**
+     * Queues input for the next tick. Safe to call from any thread.
+     */
+    public void post(Command command) {
+        commands.offer(command);
+    }
+
+    /**
+     * Advances the world by one tick of {@code dt} seconds.
+     */
+    public void step(double dt) {
+        AquariumEvents.Tick event = new AquariumEvents.Tick();
+        event.begin();
+
+        applyCommands();
+        prevCameraAngle = cameraAngle;
+
+        // Camera Logic
+        if (cinematicMode) {
+            bezierTime += dt * 0.1; // Slower pan
+            if (bezierTime > 1.0) {
+                bezierTime = 0;
+                camStart = camEnd;
+                camEnd = camEnd + Math.PI; // Keep spinning
+            }
+            double p0 = camStart;
+            double p1 = camStart + (camEnd - camStart) * 0.2;
+            double p2 = camEnd - (camEnd - camStart) * 0.2;
+            double p3 = camEnd;
+
+            targetCameraAngle = cubicBezier(bezierTime, p0, p1, p2, p3);
+            cameraAngle = targetCameraAngle;
+
+        } else {
+            // Manual Control
+            if (leftPressed)
+                targetCameraAngle -= 2.0 * dt;
+            if (rightPressed)
+                targetCameraAngle += 2.0 * dt;
+            cameraAngle += (targetCameraAngle - cameraAngle) * 5 * dt;
+        }
+
+        // Update Food
+        foodList.removeIf(food -> !food.isActive());
+        for (Food food : foodList) {
+            food.update(height);
+        }
+
+        // Update Particles
+        for (int n = emissions(BUBBLES_PER_TICK * emissionScale); n > 0; n--) {
+            particles.spawn(random.nextDouble() * width, height + 50, random.nextDouble() * 500,
+                    Particle.Type.BUBBLE);
+        }
+        for (int n = emissions(PLANKTON_PER_TICK * emissionScale); n > 0; n--) {
+            particles.spawn(random.nextDouble() * width, random.nextDouble() * height, random.nextDouble() * 500,
+                    Particle.Type.PLANKTON);
+        }
+        particles.update(dt);
+
+        // Assign Food
+        assignFood();
+
+        // Excite the fish nearest each pellet dropped this tick, now that the grid holds every fish where it is
+        for (Food food : droppedFood) {
+            int nearest = fishGrid.nearest(food.getX(), food.getY(), food.getZ());
+            if (nearest >= 0)
+                fishes.excite(nearest);
+        }
+        droppedFood.clear();
+
+        // Update Fish
+        int eatenCount = fishUpdater.update(fishes, dt, width, height, foodTargets,
+                schooling ? fishGrid : null);
+
+        // Apply eat side effects in fish order once every fish has moved
+        for (int k = 0; k < eatenCount; k++) {
+            int f = fishUpdater.getEaten(k);
+            foodTargets[f].consume();
+            if (audio != null)
+                audio.play(eatSound, -10.0f);
+            for (int i = 0; i < 5; i++) {
+                particles.spawn(fishes.getX(f), fishes.getY(f), fishes.getZ(f), Particle.Type.CRUMB);
+            }
+        }
+
+        if (event.shouldCommit()) {
+            event.tick = tick;
+            event.fish = fishes.size();
+            event.food = foodList.size();
+            event.particles = particles.size();
+            event.eaten = eatenCount;
+        }
+        event.commit();
+
+        tick++;
+    }
+
+    // Whole spawns for an expected count per tick, the fraction taken by chance
+    private int emissions(double expected) {
+        int n = (int) expected;
+        if (random.nextDouble() < expected - n)
+            n++;
+        return n;
+    }
+
+    /**
+     * Gives each fish the closest food pellet that has it as its nearest fish.
+     */
+    void assignFood() {
+        fishGrid.rebuild(fishes);
+        Arrays.fill(foodTargets, 0, fishes.size(), null);
+        for (Food food : foodList) {
+            int closest = fishGrid.nearest(food.getX(), food.getY(), food.getZ());
+            if (closest >= 0) {
+                double minD = fishes.distanceTo(closest, food.getX(), food.getY(), food.getZ());
+                Food current = foodTargets[closest];
+                if (current == null
+                        || minD < fishes.distanceTo(closest, current.getX(), current.getY(), current.getZ())) {
+                    foodTargets[closest] = food;
+                }
+            }
+        }
+    }
+
+    private void applyCommands() {
+        Command command;
+        while ((command = commands.poll()) != null) {
+            if (replay == null || command.type == Command.Type.SAVE)
+                apply(command);
+        }
+        if (replay != null) {
+            while ((command = replay.next(tick)) != null)
+                apply(command);
+        }
+    }
+
+    private void apply(Command command) {
+        if (recorder != null && command.type != Command.Type.SAVE)
+            recorder.record(tick, command); // Saving does not change the tank
+        switch (command.type) {
+            case LEFT:
+                leftPressed = command.pressed;
+                break;
+            case RIGHT:
+                rightPressed = command.pressed;
+                break;
+            case TOGGLE_CINEMATIC:
+                cinematicMode = !cinematicMode;
+                bezierTime = 0; // Reset animation
+                camStart = cameraAngle;
+                camEnd = cameraAngle + Math.PI; // Spin 180
+                System.out.println("Cinematic Mode: " + cinematicMode);
+                break;
+            case ROTATE:
+                targetCameraAngle -= command.x * 0.005;
+                break;
+            case DROP_FOOD:
+                dropFood(command.x, command.y);
+                break;
+            case EMISSION:
+                emissionScale = Math.max(0, command.x);
+                break;
+            case SCHOOLING:
+                schooling = command.pressed;
+                if (!schooling)
+                    fishes.clearFlocking(); // Otherwise the last forces would keep applying
+                break;
+            case SAVE:
+                if (saver != null)
+                    saver.capture(this);
+                break;
+            case SPAWN_FISH:
+                for (int i = 0; i < command.count; i++)
+                    addRandomFish(command.spriteType, command.x, command.y);
+                if (foodTargets.length < fishes.size())
+                    foodTargets = Arrays.copyOf(foodTargets, fishes.size());
+                break;
+        }
+    }
+
+    private void dropFood(double screenX, double screenY) {
+        // Spawn food at the center plane of the aquarium (rz = 0)
+        // We need to un-project the mouse coordinates into 3D world space
+        inputCamera.setAngle(cameraAngle);
+        inputCamera.unproject(screenX, screenY, 0, clickWorld);
+        double worldX = clickWorld[0];
+        double worldY = clickWorld[1];
+        double worldZ = clickWorld[2];
+
+        Food food = new Food(worldX, worldY, worldZ);
+        foodList.add(food);
+        droppedFood.add(food); // Nearest fish excited once this tick's grid is built
+    }
+
+    // Cubic Bezier Interpolation
+    private double cubicBezier(double t, double p0, double p1, double p2, double p3) {
+        double u = 1 - t;
+        double tt = t * t;
+        double uu = u * u;
+        double uuu = uu * u;
+        double ttt = tt * t;
+        return (uuu * p0) + (3 * uu * t * p1) + (3 * u * tt * p2) + (ttt * p3);
+    }
+
+    /**
+     * Copies everything the renderer needs into {@code snapshot}.
+     */
+    public void copyTo(FrameSnapshot snapshot) {
+        snapshot.tick = tick;
+        snapshot.prevCameraAngle = prevCameraAngle;
+        snapshot.cameraAngle = cameraAngle;
+        snapshot.cinematicMode = cinematicMode;
+        fishes.copyTo(snapshot.fish);
+        particles.copyTo(snapshot.particles);
+
+        int n = foodList.size();
+        snapshot.ensureFoodCapacity(n);
+        snapshot.foodCount = n;
+        for (int i = 0; i < n; i++) {
+            Food food = foodList.get(i);
+            snapshot.foodX[i] = food.getX();
+            snapshot.foodY[i] = food.getY();
+            snapshot.foodPrevY[i] = food.getPrevY();
+            snapshot.foodZ[i] = food.getZ();
+        }
+    }
+
+    public void shutdown() {
+        fishUpdater.shutdown();
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Hash of the whole tank, equal for two runs exactly when their state is.
+     * Must be called from the thread that steps the simulation.
+     */
+    public long stateHash() {
+        TankSnapshot snapshot = new TankSnapshot(particles.capacity());
+        saveTo(snapshot);
+        return snapshot.hash();
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public int getParticleCapacity() {
+        return particles.capacity();
+    }
+
+    public FishPopulation getFish() {
+        return fishes;
+    }
+
+    public ParticleSystem getParticles() {
+        return particles;
+    }
+
+    public List<Food> getFood() {
+        return foodList;
+    }
+
+    /**
+     * One input event, applied by the simulation at the start of a tick.
+     */
+    public static final class Command {
+        public enum Type {
+            LEFT, RIGHT, TOGGLE_CINEMATIC, ROTATE, DROP_FOOD, EMISSION, SCHOOLING, SPAWN_FISH, SAVE
+        }
+
+        final Type type;
+        final boolean pressed;
+        final double x, y;
+        final int spriteType, count;
+
+        private Command(Type type, boolean pressed, double x, double y) {
+            this(type, pressed, x, y, 0, 0);
+        }
+
+        private Command(Type type, boolean pressed, double x, double y, int spriteType, int count) {
+            this.type = type;
+            this.pressed = pressed;
+            this.x = x;
+            this.y = y;
+            this.spriteType = spriteType;
+            this.count = count;
+        }
+
+        public static Command left(boolean pressed) {
+            return new Command(Type.LEFT, pressed, 0, 0);
+        }
+
+        public static Command right(boolean pressed) {
+            return new Command(Type.RIGHT, pressed, 0, 0);
+        }
+
+        public static Command toggleCinematic() {
+            return new Command(Type.TOGGLE_CINEMATIC, false, 0, 0);
+        }
+
+        /** Mouse drag of {@code dx} pixels. */
+        public static Command rotate(double dx) {
+            return new Command(Type.ROTATE, false, dx, 0);
+        }
+
+        /** Food dropped at a screen position. */
+        public static Command dropFood(double screenX, double screenY) {
+            return new Command(Type.DROP_FOOD, false, screenX, screenY);
+        }
+
+        /** Multiplier on the ambient bubble and plankton spawn rates. */
+        public static Command emission(double scale) {
+            return new Command(Type.EMISSION, false, scale, 0);
+        }
+
+        /** Turns separation, alignment and cohesion between fish on or off. */
+        public static Command schooling(boolean enabled) {
+            return new Command(Type.SCHOOLING, enabled, 0, 0);
+        }
+
+        /** Hands a copy of the tank to the {@link TankSaver}, if any. */
+        public static Command save() {
+            return new Command(Type.SAVE, false, 0, 0);
+        }
+
+        /** Adds {@code count} fish of a sprite type whose image has finished loading. */
+        public static Command spawnFish(int spriteType, double spriteWidth, double spriteHeight, int count) {
+            return new Command(Type.SPAWN_FISH, false, spriteWidth, spriteHeight, spriteType, count);
+        }
+
+        // Only the fields each type uses, for an InputRecorder log
+        void write(DataOutput out) throws IOException {
+            out.writeByte(type.ordinal());
+            switch (type) {
+                case LEFT:
+                case RIGHT:
+                case SCHOOLING:
+                    out.writeBoolean(pressed);
+                    break;
+                case ROTATE:
+                case EMISSION:
+                    out.writeDouble(x);
+                    break;
+                case DROP_FOOD:
+                    out.writeDouble(x);
+                    out.writeDouble(y);
+                    break;
+                case SPAWN_FISH:
+                    out.writeDouble(x);
+                    out.writeDouble(y);
+                    out.writeInt(spriteType);
+                    out.writeInt(count);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        static Command read(DataInput in) throws IOException {
+            int ordinal = in.readUnsignedByte();
+            Type[] types = Type.values();
+            if (ordinal >= types.length)
+                throw new IOException("Unknown command type " + ordinal);
+            Type type = types[ordinal];
+            switch (type) {
+                case LEFT:
+                case RIGHT:
+                case SCHOOLING:
+                    return new Command(type, in.readBoolean(), 0, 0);
+                case ROTATE:
+                case EMISSION:
+                    return new Command(type, false, in.readDouble(), 0);
+                case DROP_FOOD:
+                    return new Command(type, false, in.readDouble(), in.readDouble());
+                case SPAWN_FISH:
+                    double w = in.readDouble();
+                    double h = in.readDouble();
+                    return new Command(type, false, w, h, in.readInt(), in.readInt());
+                default:
+                    return new Command(type, false, 0, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Steps a {@link Simulation} at {@link Simulation#TICK_RATE} on its own thread
+ * and publishes a snapshot after every tick.
+ *
+ * Ticks are scheduled against the wall clock; if the thread falls behind it
+ * runs up to {@code MAX_CATCH_UP_TICKS} ticks back to back and then drops the
+ * remaining backlog rather than spiralling.
+ */
+public class SimulationThread {
+    private static final int MAX_CATCH_UP_TICKS = 5;
+
+    private final Simulation simulation;
+    private final SnapshotExchange exchange;
+    private final long tickNanos = 1_000_000_000L / Simulation.TICK_RATE;
+
+    private volatile boolean running = false;
+    private Thread thread;
+
+    public SimulationThread(Simulation simulation, SnapshotExchange exchange) {
+        this.simulation = simulation;
+        this.exchange = exchange;
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "aquarium-simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public long getTickNanos() {
+        return tickNanos;
+    }
+
+    private void run() {
+        long nextTick = System.nanoTime();
+        while (running) {
+            long now = System.nanoTime();
+            int steps = 0;
+            while (now >= nextTick && steps < MAX_CATCH_UP_TICKS) {
+                long stepStart = System.nanoTime();
+                simulation.step(Simulation.TICK_DT);
+                publish(System.nanoTime() - stepStart);
+                nextTick += tickNanos;
+                steps++;
+            }
+            if (now >= nextTick)
+                nextTick = now + tickNanos; // Too far behind, drop the backlog
+
+            long wait = nextTick - System.nanoTime();
+            if (wait > 0)
+                LockSupport.parkNanos(wait);
+        }
+    }
+
+    private void publish(long stepNanos) {
+        FrameSnapshot snapshot = exchange.back();
+        simulation.copyTo(snapshot);
+        snapshot.stepNanos = stepNanos;
+        snapshot.publishedNanos = System.nanoTime();
+        exchange.publish();
+    }
+}
@@ -0,0 +1,48 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free triple buffer of {@link FrameSnapshot}s between one writer and one
+ * reader.
+ *
+ * The writer always owns a back buffer and the reader a front buffer; the
+ * third sits in the middle. Publishing and acquiring each swap with the middle
+ * slot in a single atomic operation, so neither side ever waits for the other
+ * and a published snapshot is never modified while the reader holds it.
+ */
+public class SnapshotExchange {
+    private static final int FRESH = 4; // Set on the middle index when it holds an unread snapshot
+    private static final int INDEX_MASK = 3;
+
+    private final FrameSnapshot[] buffers;
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0;
+    private int front = 2;
+
+    public SnapshotExchange(int particleCapacity) {
+        buffers = new FrameSnapshot[] {
+                new FrameSnapshot(particleCapacity),
+                new FrameSnapshot(particleCapacity),
+                new FrameSnapshot(particleCapacity)
+        };
+    }
+
+    /** Writer side: the snapshot to fill before the next {@link #publish()}. */
+    public FrameSnapshot back() {
+        return buffers[back];
+    }
+
+    /** Writer side: hands the back buffer to the reader. */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Reader side: returns the newest published snapshot, or the one returned
+     * last time if nothing new has been published.
+     */
+    public FrameSnapshot acquire() {
+        if ((middle.get() & FRESH) != 0)
+            front = middle.getAndSet(front) & INDEX_MASK;
+        return buffers[front];
+    }
+}
@@ -0,0 +1,216 @@
+import java.util.Arrays;
+
+/**
+ * Uniform 3D spatial hash over fish positions.
+ *
+ * The grid is rebuilt from scratch every tick with a counting sort: fish are
+ * bucketed by the hash of their cell, and a copy of each position is stored
+ * in bucket order so queries read contiguous memory. Hash collisions are
+ * resolved by comparing the packed cell key of every entry.
+ */
+public class SpatialHash {
+    private static final int MIN_TABLE_SIZE = 64;
+
+    private final double cellSize;
+    private final double invCellSize;
+
+    private int count = 0;
+    private int tableMask;
+    private int[] bucketStart; // tableSize + 1 offsets into the entry arrays
+    private int[] fill;
+
+    // Entries in bucket order
+    private int[] entryIndex;
+    private long[] entryCell;
+    private double[] entryX, entryY, entryZ;
+
+    // Per-fish scratch written during rebuild
+    private int[] bucketOf;
+    private long[] cellOf;
+
+    public SpatialHash(double cellSize) {
+        this.cellSize = cellSize;
+        this.invCellSize = 1.0 / cellSize;
+        allocate(0);
+    }
+
+    private void allocate(int capacity) {
+        int tableSize = MIN_TABLE_SIZE;
+        while (tableSize < capacity * 2)
+            tableSize <<= 1;
+        if (bucketStart == null || bucketStart.length != tableSize + 1) {
+            tableMask = tableSize - 1;
+            bucketStart = new int[tableSize + 1];
+            fill = new int[tableSize];
+        }
+        if (entryIndex == null || entryIndex.length < capacity) {
+            int n = Math.max(capacity, 16);
+            entryIndex = new int[n];
+            entryCell = new long[n];
+            entryX = new double[n];
+            entryY = new double[n];
+            entryZ = new double[n];
+            bucketOf = new int[n];
+            cellOf = new long[n];
+        }
+    }
+
+    /**
+     * Re-buckets every fish in the population at its current position.
+     */
+    public void rebuild(FishPopulation fish) {
+        int n = fish.size();
+        allocate(n);
+        count = n;
+
+        // 1. Count fish per bucket
+        Arrays.fill(bucketStart, 0);
+        for (int i = 0; i < n; i++) {
+            long cell = cellKey(cellCoord(fish.getX(i)), cellCoord(fish.getY(i)), cellCoord(fish.getZ(i)));
+            int bucket = bucket(cell);
+            cellOf[i] = cell;
+            bucketOf[i] = bucket;
+            bucketStart[bucket + 1]++;
+        }
+
+        // 2. Prefix sum into bucket offsets
+        for (int b = 0; b < tableMask + 1; b++)
+            bucketStart[b + 1] += bucketStart[b];
+
+        // 3. Scatter entries into bucket order
+        System.arraycopy(bucketStart, 0, fill, 0, fill.length);
+        for (int i = 0; i < n; i++) {
+            int slot = fill[bucketOf[i]]++;
+            entryIndex[slot] = i;
+            entryCell[slot] = cellOf[i];
+            entryX[slot] = fish.getX(i);
+            entryY[slot] = fish.getY(i);
+            entryZ[slot] = fish.getZ(i);
+        }
+    }
+
+    /**
+     * Returns the index of the fish closest to the given point, or -1 if the
+     * grid is empty.
+     */
+    public int nearest(double x, double y, double z) {
+        if (count == 0)
+            return -1;
+
+        int cx = cellCoord(x);
+        int cy = cellCoord(y);
+        int cz = cellCoord(z);
+
+        int best = -1;
+        double bestD2 = Double.MAX_VALUE;
+        long cellsVisited = 0;
+
+        // Search shells of cells at growing Chebyshev distance from the query cell
+        for (int r = 0;; r++) {
+            for (int dx = -r; dx <= r; dx++) {
+                for (int dy = -r; dy <= r; dy++) {
+                    boolean edge = Math.abs(dx) == r || Math.abs(dy) == r;
+                    // Interior columns only need their two end caps
+                    int stepZ = edge ? 1 : 2 * r;
+                    for (int dz = -r; dz <= r; dz += stepZ) {
+                        long cell = cellKey(cx + dx, cy + dy, cz + dz);
+                        int bucket = bucket(cell);
+                        for (int e = bucketStart[bucket]; e < bucketStart[bucket + 1]; e++) {
+                            if (entryCell[e] != cell)
+                                continue;
+                            double ex = entryX[e] - x;
+                            double ey = entryY[e] - y;
+                            double ez = entryZ[e] - z;
+                            double d2 = ex * ex + ey * ey + ez * ez;
+                            if (d2 < bestD2) {
+                                bestD2 = d2;
+                                best = entryIndex[e];
+                            }
+                        }
+                        cellsVisited++;
+                    }
+                }
+            }
+
+            // Anything in shell r + 1 is at least r cells away
+            double reach = r * cellSize;
+            if (best >= 0 && bestD2 <= reach * reach)
+                return best;
+
+            // Sparse or distant fish: a plain scan is cheaper than more shells
+            if (cellsVisited > count)
+                return nearestLinear(x, y, z);
+        }
+    }
+
+    private int nearestLinear(double x, double y, double z) {
+        int best = -1;
+        double bestD2 = Double.MAX_VALUE;
+        for (int e = 0; e < count; e++) {
+            double ex = entryX[e] - x;
+            double ey = entryY[e] - y;
+            double ez = entryZ[e] - z;
+            double d2 = ex * ex + ey * ey + ez * ez;
+            if (d2 < bestD2) {
+                bestD2 = d2;
+                best = entryIndex[e];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Writes the indices of all fish within {@code radius} of the point into
+     * {@code out} and returns how many were found, capped at its length.
+     */
+    public int queryRadius(double x, double y, double z, double radius, int[] out) {
+        if (count == 0)
+            return 0;
+
+        int minX = cellCoord(x - radius), maxX = cellCoord(x + radius);
+        int minY = cellCoord(y - radius), maxY = cellCoord(y + radius);
+        int minZ = cellCoord(z - radius), maxZ = cellCoord(z + radius);
+        double r2 = radius * radius;
+
+        int found = 0;
+        for (int ix = minX; ix <= maxX; ix++) {
+            for (int iy = minY; iy <= maxY; iy++) {
+                for (int iz = minZ; iz <= maxZ; iz++) {
+                    long cell = cellKey(ix, iy, iz);
+                    int bucket = bucket(cell);
+                    for (int e = bucketStart[bucket]; e < bucketStart[bucket + 1]; e++) {
+                        if (entryCell[e] != cell)
+                            continue;
+                        double ex = entryX[e] - x;
+                        double ey = entryY[e] - y;
+                        double ez = entryZ[e] - z;
+                        if (ex * ex + ey * ey + ez * ez <= r2) {
+                            out[found++] = entryIndex[e];
+                            if (found == out.length)
+                                return found;
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    private int cellCoord(double v) {
+        return (int) Math.floor(v * invCellSize);
+    }
+
+    // Packs three 21-bit signed cell coordinates into one key
+    private static long cellKey(int ix, int iy, int iz) {
+        return ((ix & 0x1FFFFFL) << 42) | ((iy & 0x1FFFFFL) << 21) | (iz & 0x1FFFFFL);
+    }
+
+    private int bucket(long cell) {
+        long h = cell * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & tableMask;
+    }
+}
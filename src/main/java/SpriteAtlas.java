@@ -0,0 +1,392 @@
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritablePixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.IntBuffer;
+
+/**
+ * All fish sprites packed into one texture with pre-filtered mip levels.
+ *
+ * Every sprite type gets a cell holding a mip chain for each facing: the
+ * base level is the source image scaled down to at most
+ * {@code MAX_BASE_SIZE} pixels, each further level halves it. Levels are
+ * built once at load time with an area-averaging filter in premultiplied
+ * alpha, so drawing only ever samples a level close to the on-screen size and
+ * the mirrored facing never needs a flip transform.
+ *
+ * Cells are sized for the largest possible chain, so sprites can be added one
+ * at a time as they finish loading: {@link #prepare} does the filtering on
+ * any thread and {@link #put} copies the result in on the FX thread. Types
+ * that have not been put yet draw nothing. A finished atlas can be saved as
+ * its pixels plus {@link #getLayout()} and brought back with
+ * {@link #restore}, e.g. from an {@link AssetCache}.
+ */
+public class SpriteAtlas {
+    private static final int MAX_BASE_SIZE = 256;
+    private static final int MIN_LEVEL_SIZE = 8;
+    private static final int PADDING = 1; // Transparent gutter so filtering never bleeds between regions
+    private static final int MAX_ATLAS_WIDTH = 2048;
+
+    private final WritableImage image;
+    private final int maxLevels;
+    private final int columns;
+    private final int cellW, cellH;
+    private final int[] levelCount;
+    private final Color[] averageColor;
+    private final int[] sourceWidth, sourceHeight;
+
+    // Source rectangle per (type, facing, level)
+    private final int[] regionX, regionY, regionW, regionH;
+
+    /** An empty atlas with room for {@code types} sprites. */
+    public SpriteAtlas(int types) {
+        this(types, null);
+    }
+
+    // Uses image if given, which must have the size this layout needs
+    private SpriteAtlas(int types, WritableImage existing) {
+        levelCount = new int[types];
+        averageColor = new Color[types];
+        sourceWidth = new int[types];
+        sourceHeight = new int[types];
+
+        // 1. Worst-case cell: a square base level and its whole chain
+        int levels = 0;
+        int columnH = 0;
+        for (int size = MAX_BASE_SIZE; levels == 0 || size >= MIN_LEVEL_SIZE; size /= 2) {
+            columnH += size + 2 * PADDING;
+            levels++;
+        }
+        maxLevels = levels;
+        cellW = MAX_BASE_SIZE + 2 * PADDING;
+        cellH = columnH;
+
+        // 2. Grid layout, one cell per type and facing
+        int cells = Math.max(1, types * 2);
+        columns = Math.max(1, Math.min(cells, MAX_ATLAS_WIDTH / cellW));
+        int rows = (cells + columns - 1) / columns;
+        image = existing != null ? existing : new WritableImage(columns * cellW, rows * cellH);
+
+        int slots = types * 2 * maxLevels;
+        regionX = new int[slots];
+        regionY = new int[slots];
+        regionW = new int[slots];
+        regionH = new int[slots];
+    }
+
+    /**
+     * Filters a source image into a mip chain ready for {@link #put}. Safe to
+     * call from any thread.
+     */
+    public static Sprite prepare(Image source) {
+        int sw = (int) source.getWidth();
+        int sh = (int) source.getHeight();
+        double fit = Math.min(1.0, MAX_BASE_SIZE / (double) Math.max(sw, sh));
+        int w = Math.max(1, (int) Math.round(sw * fit));
+        int h = Math.max(1, (int) Math.round(sh * fit));
+
+        int[] level = new int[sw * sh];
+        source.getPixelReader().getPixels(0, 0, sw, sh, PixelFormat.getIntArgbPreInstance(), level, 0, sw);
+        level = resize(level, sw, sh, w, h);
+
+        int[][] levels = new int[16][];
+        int[] widths = new int[16];
+        int[] heights = new int[16];
+        int count = 0;
+        while (true) {
+            levels[count] = level;
+            widths[count] = w;
+            heights[count] = h;
+            count++;
+            int nw = Math.max(1, w / 2);
+            int nh = Math.max(1, h / 2);
+            if (Math.max(nw, nh) < MIN_LEVEL_SIZE || count == levels.length)
+                break;
+            level = resize(level, w, h, nw, nh);
+            w = nw;
+            h = nh;
+        }
+        return new Sprite(sw, sh, count, levels, widths, heights, average(level));
+    }
+
+    /**
+     * Copies a prepared sprite into the cells of {@code type}, mirrored into
+     * the second one. FX thread only.
+     */
+    public void put(int type, Sprite sprite) {
+        place(type, sprite.sourceWidth, sprite.sourceHeight, sprite.levels, sprite.widths, sprite.heights,
+                sprite.averageColor);
+        WritablePixelFormat<IntBuffer> format = PixelFormat.getIntArgbPreInstance();
+        for (int l = 0; l < levelCount[type]; l++) {
+            int w = sprite.widths[l];
+            int h = sprite.heights[l];
+            for (int facing = 0; facing < 2; facing++) {
+                int slot = slot(type, facing == 1, l);
+                int[] pixels = facing == 0 ? sprite.pixels[l] : mirror(sprite.pixels[l], w, h);
+                image.getPixelWriter().setPixels(regionX[slot], regionY[slot], w, h, format, pixels, 0, w);
+            }
+        }
+    }
+
+    // Fills in the regions of a type's mip chain, stacked down its two cells
+    private void place(int type, int srcWidth, int srcHeight, int levels, int[] widths, int[] heights,
+            Color average) {
+        levels = Math.min(levels, maxLevels);
+        int offsetY = PADDING;
+        for (int l = 0; l < levels; l++) {
+            for (int facing = 0; facing < 2; facing++) {
+                int cell = type * 2 + facing;
+                int slot = slot(type, facing == 1, l);
+                regionX[slot] = (cell % columns) * cellW + PADDING;
+                regionY[slot] = (cell / columns) * cellH + offsetY;
+                regionW[slot] = widths[l];
+                regionH[slot] = heights[l];
+            }
+            offsetY += heights[l] + 2 * PADDING;
+        }
+        sourceWidth[type] = srcWidth;
+        sourceHeight[type] = srcHeight;
+        averageColor[type] = average;
+        levelCount[type] = levels;
+    }
+
+    /**
+     * Everything except the pixels needed to {@link #restore} this atlas:
+     * the type count and each type's source size, average color and level
+     * sizes.
+     */
+    public byte[] getLayout() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(levelCount.length);
+            for (int t = 0; t < levelCount.length; t++) {
+                out.writeInt(levelCount[t]);
+                if (levelCount[t] == 0)
+                    continue;
+                out.writeInt(sourceWidth[t]);
+                out.writeInt(sourceHeight[t]);
+                Color c = averageColor[t];
+                out.writeInt(channel(c.getRed() * 255) << 16 | channel(c.getGreen() * 255) << 8
+                        | channel(c.getBlue() * 255));
+                for (int l = 0; l < levelCount[t]; l++) {
+                    int s = slot(t, false, l);
+                    out.writeInt(regionW[s]);
+                    out.writeInt(regionH[s]);
+                }
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Not thrown by in-memory streams
+        }
+    }
+
+    /**
+     * Rebuilds an atlas around pixels saved from {@link #getImage()} and its
+     * {@link #getLayout()}. The image is used as is, so it may be read-only;
+     * {@link #put} must not be called on the result.
+     *
+     * @throws IOException if the layout is corrupt or does not match the image
+     */
+    public static SpriteAtlas restore(WritableImage pixels, byte[] layout) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(layout));
+        int types = in.readInt();
+        if (types < 0 || types > 4096)
+            throw new IOException("Bad sprite count " + types);
+        SpriteAtlas atlas = new SpriteAtlas(types, pixels);
+        int rows = (Math.max(1, types * 2) + atlas.columns - 1) / atlas.columns;
+        if (pixels.getWidth() != atlas.columns * atlas.cellW || pixels.getHeight() != rows * atlas.cellH)
+            throw new IOException("Atlas image does not match its layout");
+
+        for (int t = 0; t < types; t++) {
+            int levels = in.readInt();
+            if (levels == 0)
+                continue;
+            if (levels < 0 || levels > atlas.maxLevels)
+                throw new IOException("Bad level count " + levels);
+            int srcWidth = in.readInt();
+            int srcHeight = in.readInt();
+            int rgb = in.readInt();
+            int[] widths = new int[levels];
+            int[] heights = new int[levels];
+            for (int l = 0; l < levels; l++) {
+                widths[l] = in.readInt();
+                heights[l] = in.readInt();
+            }
+            atlas.place(t, srcWidth, srcHeight, levels, widths, heights,
+                    Color.rgb((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF));
+        }
+        return atlas;
+    }
+
+    /**
+     * The whole atlas as premultiplied ARGB, for saving. FX thread only.
+     */
+    public int[] getPixels() {
+        int w = (int) image.getWidth();
+        int h = (int) image.getHeight();
+        int[] pixels = new int[w * h];
+        image.getPixelReader().getPixels(0, 0, w, h, PixelFormat.getIntArgbPreInstance(), pixels, 0, w);
+        return pixels;
+    }
+
+    public boolean isReady(int type) {
+        return levelCount[type] > 0;
+    }
+
+    // Alpha-weighted mean color of premultiplied pixels, fully opaque
+    private static Color average(int[] pixels) {
+        long a = 0, r = 0, g = 0, b = 0;
+        for (int p : pixels) {
+            a += p >>> 24;
+            r += (p >> 16) & 0xFF;
+            g += (p >> 8) & 0xFF;
+            b += p & 0xFF;
+        }
+        if (a == 0)
+            return Color.GRAY;
+        return Color.rgb(channel(255.0 * r / a), channel(255.0 * g / a), channel(255.0 * b / a));
+    }
+
+    private int slot(int type, boolean mirrored, int level) {
+        return ((type * 2) + (mirrored ? 1 : 0)) * maxLevels + level;
+    }
+
+    /**
+     * Draws a sprite into the given rectangle using the smallest mip level
+     * that is still at least as wide as the rectangle.
+     *
+     * @param mirrored draw the horizontally flipped variant
+     */
+    public void draw(GraphicsContext gc, int type, boolean mirrored, double x, double y, double w, double h) {
+        if (levelCount[type] == 0)
+            return;
+        int base = slot(type, mirrored, 0);
+        int level = 0;
+        while (level + 1 < levelCount[type] && regionW[base + level + 1] >= w)
+            level++;
+        int s = base + level;
+        gc.drawImage(image, regionX[s], regionY[s], regionW[s], regionH[s], x, y, w, h);
+    }
+
+    /** Average color of a sprite, for drawing it as a dot. */
+    public Color getAverageColor(int type) {
+        return averageColor[type];
+    }
+
+    /** Size of the image a sprite type was built from, which sets the fish's world size. */
+    public int getSourceWidth(int type) {
+        return sourceWidth[type];
+    }
+
+    public int getSourceHeight(int type) {
+        return sourceHeight[type];
+    }
+
+    public int getTypeCount() {
+        return levelCount.length;
+    }
+
+    public Image getImage() {
+        return image;
+    }
+
+    // Area-averaging resize of premultiplied ARGB pixels, horizontal then vertical
+    private static int[] resize(int[] src, int sw, int sh, int dw, int dh) {
+        float[] rows = new float[dw * sh * 4];
+        double sx = (double) sw / dw;
+        for (int y = 0; y < sh; y++) {
+            for (int x = 0; x < dw; x++) {
+                double start = x * sx;
+                double end = start + sx;
+                float a = 0, r = 0, g = 0, b = 0;
+                for (int s = (int) start; s < end && s < sw; s++) {
+                    float weight = (float) (Math.min(end, s + 1) - Math.max(start, s));
+                    int p = src[y * sw + s];
+                    a += weight * (p >>> 24);
+                    r += weight * ((p >> 16) & 0xFF);
+                    g += weight * ((p >> 8) & 0xFF);
+                    b += weight * (p & 0xFF);
+                }
+                int o = (y * dw + x) * 4;
+                rows[o] = (float) (a / sx);
+                rows[o + 1] = (float) (r / sx);
+                rows[o + 2] = (float) (g / sx);
+                rows[o + 3] = (float) (b / sx);
+            }
+        }
+
+        int[] out = new int[dw * dh];
+        double sy = (double) sh / dh;
+        for (int y = 0; y < dh; y++) {
+            double start = y * sy;
+            double end = start + sy;
+            for (int x = 0; x < dw; x++) {
+                float a = 0, r = 0, g = 0, b = 0;
+                for (int s = (int) start; s < end && s < sh; s++) {
+                    float weight = (float) (Math.min(end, s + 1) - Math.max(start, s));
+                    int o = (s * dw + x) * 4;
+                    a += weight * rows[o];
+                    r += weight * rows[o + 1];
+                    g += weight * rows[o + 2];
+                    b += weight * rows[o + 3];
+                }
+                out[y * dw + x] = (channel(a / sy) << 24) | (channel(r / sy) << 16) | (channel(g / sy) << 8)
+                        | channel(b / sy);
+            }
+        }
+        return out;
+    }
+
+    private static int channel(double v) {
+        return Math.max(0, Math.min(255, (int) Math.round(v)));
+    }
+
+    private static int[] mirror(int[] pixels, int w, int h) {
+        int[] out = new int[pixels.length];
+        for (int y = 0; y < h; y++)
+            for (int x = 0; x < w; x++)
+                out[y * w + x] = pixels[y * w + (w - 1 - x)];
+        return out;
+    }
+
+    /**
+     * A filtered mip chain waiting to be put into an atlas.
+     */
+    public static final class Sprite {
+        private final int sourceWidth, sourceHeight;
+        private final int levels;
+        private final int[][] pixels;
+        private final int[] widths, heights;
+        private final Color averageColor;
+
+        private Sprite(int sourceWidth, int sourceHeight, int levels, int[][] pixels, int[] widths, int[] heights,
+                Color averageColor) {
+            this.sourceWidth = sourceWidth;
+            this.sourceHeight = sourceHeight;
+            this.levels = levels;
+            this.pixels = pixels;
+            this.widths = widths;
+            this.heights = heights;
+            this.averageColor = averageColor;
+        }
+
+        /** Width of the source image, which sets the fish's world size. */
+        public int getSourceWidth() {
+            return sourceWidth;
+        }
+
+        public int getSourceHeight() {
+            return sourceHeight;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Periodically saves the tank to a {@link TankSnapshot} file.
+ *
+ * On each period a save command is posted to the simulation; when the
+ * simulation thread applies it, the tank is copied into a reusable snapshot
+ * with plain array copies and the file is written on this saver's own
+ * thread. Neither the render loop nor the simulation waits for disk I/O. If
+ * the previous write is still running the save is skipped.
+ */
+public class TankSaver {
+    private final Path file;
+    private final TankSnapshot snapshot;
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "aquarium-saver");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public TankSaver(Path file, int particleCapacity) {
+        this.file = file;
+        this.snapshot = new TankSnapshot(particleCapacity);
+    }
+
+    /** Posts a save to {@code simulation} every {@code periodSeconds}. */
+    public void start(Simulation simulation, long periodSeconds) {
+        executor.scheduleAtFixedRate(() -> simulation.post(Simulation.Command.save()), periodSeconds,
+                periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Copies the tank and queues the write. Called by the simulation thread.
+     */
+    public void capture(Simulation simulation) {
+        if (!writing.compareAndSet(false, true))
+            return;
+        simulation.saveTo(snapshot);
+        executor.execute(this::write);
+    }
+
+    /**
+     * Stops the periodic saves and writes the tank one last time on the
+     * calling thread. The simulation thread must already be stopped. If a
+     * periodic write is still running after the wait, the final save is
+     * skipped rather than racing it for the snapshot and the file.
+     */
+    public void stop(Simulation simulation) {
+        executor.shutdown();
+        boolean terminated;
+        try {
+            terminated = executor.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            terminated = false;
+        }
+        if (!terminated || !writing.compareAndSet(false, true)) {
+            System.err.println("Tank save still in progress; skipping the final save");
+            return;
+        }
+        simulation.saveTo(snapshot);
+        write();
+    }
+
+    private void write() {
+        try {
+            snapshot.write(file);
+        } catch (IOException e) {
+            System.err.println("Could not save tank: " + e.getMessage());
+        } finally {
+            writing.set(false);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The complete state of the tank, copied out of a {@link Simulation} so it can
+ * be written to disk on another thread, and read back on the next launch.
+ *
+ * File format (little-endian): magic, version, tick, random state, camera and
+ * mode fields, then fish, food and particles each as a count followed by one packed array
+ * per field. Whole arrays are moved with bulk buffer copies, so saving and
+ * loading stay proportional to a memcpy even at 100k+ entities. Readers
+ * reject other versions rather than guessing at their layout.
+ */
+public class TankSnapshot {
+    private static final int MAGIC = 0x41515453; // "AQTS"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 7 * 8 + 2;
+
+    final FishPopulation fish = new FishPopulation();
+    final ParticleSystem particles;
+
+    int foodCount;
+    double[] foodX = new double[0], foodY = new double[0], foodZ = new double[0];
+    double[] foodPrevY = new double[0], foodSpeedY = new double[0];
+
+    long tick;
+    double cameraAngle, prevCameraAngle, targetCameraAngle;
+    boolean cinematicMode;
+    double bezierTime, camStart, camEnd;
+    boolean schooling;
+    double emissionScale = 1.0;
+    long randomState;
+
+    private ByteBuffer buffer; // Reused between writes
+
+    /**
+     * @param particleCapacity particle pool size; loading a snapshot with
+     *                         more particles keeps the first ones
+     */
+    public TankSnapshot(int particleCapacity) {
+        particles = new ParticleSystem(particleCapacity);
+    }
+
+    void ensureFoodCapacity(int needed) {
+        if (needed <= foodX.length)
+            return;
+        int capacity = Math.max(needed, foodX.length * 2);
+        foodX = Arrays.copyOf(foodX, capacity);
+        foodY = Arrays.copyOf(foodY, capacity);
+        foodZ = Arrays.copyOf(foodZ, capacity);
+        foodPrevY = Arrays.copyOf(foodPrevY, capacity);
+        foodSpeedY = Arrays.copyOf(foodSpeedY, capacity);
+    }
+
+    /**
+     * Writes the snapshot to a temporary file and moves it over {@code file},
+     * so a crash mid-write never leaves a truncated snapshot behind.
+     */
+    public void write(Path file) throws IOException {
+        ByteBuffer out = encode();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (out.hasRemaining())
+                channel.write(out);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** 64-bit hash of the encoded snapshot, for comparing runs. */
+    public long hash() {
+        ByteBuffer in = encode();
+        long h = 0xCBF29CE484222325L;
+        while (in.remaining() >= 8)
+            h = (h ^ in.getLong()) * 0x100000001B3L;
+        while (in.hasRemaining())
+            h = (h ^ in.get()) * 0x100000001B3L;
+        return h;
+    }
+
+    // Encodes into the reused buffer, flipped ready for reading
+    private ByteBuffer encode() {
+        int bytes = HEADER_BYTES + fish.snapshotBytes() + 4 + foodCount * 5 * 8 + particles.snapshotBytes();
+        if (buffer == null || buffer.capacity() < bytes)
+            buffer = ByteBuffer.allocateDirect(bytes + bytes / 4).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer out = buffer;
+        out.clear();
+
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putLong(tick);
+        out.putLong(randomState);
+        out.putDouble(cameraAngle);
+        out.putDouble(prevCameraAngle);
+        out.putDouble(targetCameraAngle);
+        out.putDouble(bezierTime);
+        out.putDouble(camStart);
+        out.putDouble(camEnd);
+        out.putDouble(emissionScale);
+        out.put((byte) (cinematicMode ? 1 : 0));
+        out.put((byte) (schooling ? 1 : 0));
+
+        fish.write(out);
+        out.putInt(foodCount);
+        putDoubles(out, foodX, foodCount);
+        putDoubles(out, foodY, foodCount);
+        putDoubles(out, foodZ, foodCount);
+        putDoubles(out, foodPrevY, foodCount);
+        putDoubles(out, foodSpeedY, foodCount);
+        particles.write(out);
+        out.flip();
+        return out;
+    }
+
+    /**
+     * Reads a snapshot written by {@link #write}.
+     *
+     * @throws IOException if the file cannot be read, is from another format
+     *                     version or is truncated
+     */
+    public static TankSnapshot read(Path file, int particleCapacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (in.getInt() != MAGIC)
+                throw new IOException("Not a tank snapshot");
+            int version = in.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported snapshot version " + version);
+
+            TankSnapshot snapshot = new TankSnapshot(particleCapacity);
+            snapshot.tick = in.getLong();
+            snapshot.randomState = in.getLong();
+            snapshot.cameraAngle = in.getDouble();
+            snapshot.prevCameraAngle = in.getDouble();
+            snapshot.targetCameraAngle = in.getDouble();
+            snapshot.bezierTime = in.getDouble();
+            snapshot.camStart = in.getDouble();
+            snapshot.camEnd = in.getDouble();
+            snapshot.emissionScale = in.getDouble();
+            snapshot.cinematicMode = in.get() != 0;
+            snapshot.schooling = in.get() != 0;
+
+            snapshot.fish.read(in);
+            int food = readCount(in, 5 * 8);
+            snapshot.ensureFoodCapacity(food);
+            snapshot.foodCount = food;
+            getDoubles(in, snapshot.foodX, food, food);
+            getDoubles(in, snapshot.foodY, food, food);
+            getDoubles(in, snapshot.foodZ, food, food);
+            getDoubles(in, snapshot.foodPrevY, food, food);
+            getDoubles(in, snapshot.foodSpeedY, food, food);
+            snapshot.particles.read(in);
+            return snapshot;
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt tank snapshot: " + e, e);
+        }
+    }
+
+    public int getFishCount() {
+        return fish.size();
+    }
+
+    /** Highest sprite type of any fish, or -1 if there are none. */
+    public int getMaxSpriteType() {
+        int max = -1;
+        for (int i = 0; i < fish.size(); i++)
+            max = Math.max(max, fish.getSpriteType(i));
+        return max;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    // Reads an entity count and checks the file is long enough to hold them
+    static int readCount(ByteBuffer in, int bytesPerEntity) throws IOException {
+        int n = in.getInt();
+        if (n < 0 || (long) n * bytesPerEntity > in.remaining())
+            throw new IOException("Bad entity count " + n);
+        return n;
+    }
+
+    static void putDoubles(ByteBuffer out, double[] a, int n) {
+        out.asDoubleBuffer().put(a, 0, n);
+        out.position(out.position() + n * 8);
+    }
+
+    // Reads n values and keeps the first keep of them
+    static void getDoubles(ByteBuffer in, double[] a, int n, int keep) {
+        in.asDoubleBuffer().get(a, 0, keep);
+        in.position(in.position() + n * 8);
+    }
+
+    static void putLongs(ByteBuffer out, long[] a, int n) {
+        out.asLongBuffer().put(a, 0, n);
+        out.position(out.position() + n * 8);
+    }
+
+    static void getLongs(ByteBuffer in, long[] a, int n, int keep) {
+        in.asLongBuffer().get(a, 0, keep);
+        in.position(in.position() + n * 8);
+    }
+
+    static void putInts(ByteBuffer out, int[] a, int n) {
+        out.asIntBuffer().put(a, 0, n);
+        out.position(out.position() + n * 4);
+    }
+
+    static void getInts(ByteBuffer in, int[] a, int n, int keep) {
+        in.asIntBuffer().get(a, 0, keep);
+        in.position(in.position() + n * 4);
+    }
+}
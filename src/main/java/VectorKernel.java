@@ -0,0 +1,73 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link IntegrationKernel} on the Vector API, using the widest lanes the CPU
+ * offers (four doubles on AVX2). Only loaded when the JVM runs with
+ * {@code --add-modules jdk.incubator.vector}. The operations mirror the
+ * scalar loop exactly, with no fused multiply-add, so results are
+ * bit-identical.
+ */
+class VectorKernel extends IntegrationKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public String getName() {
+        return "vector x" + SPECIES.length();
+    }
+
+    @Override
+    public void add(double[] a, double d, int from, int to) {
+        int i = from;
+        for (int upper = from + SPECIES.loopBound(to - from); i < upper; i += SPECIES.length())
+            DoubleVector.fromArray(SPECIES, a, i).add(d).intoArray(a, i);
+        for (; i < to; i++)
+            a[i] += d;
+    }
+
+    @Override
+    public void integrate(double[] x, double[] v, double dt, int from, int to) {
+        int i = from;
+        for (int upper = from + SPECIES.loopBound(to - from); i < upper; i += SPECIES.length()) {
+            DoubleVector step = DoubleVector.fromArray(SPECIES, v, i).mul(dt);
+            DoubleVector.fromArray(SPECIES, x, i).add(step).intoArray(x, i);
+        }
+        for (; i < to; i++)
+            x[i] += v[i] * dt;
+    }
+
+    @Override
+    public void integrateClamped(double[] x, double[] y, double[] z, double[] vx, double[] vy, double[] vz,
+            double[] ax, double[] ay, double[] az, double[] limit, double[] speed, int from, int to) {
+        int i = from;
+        for (int upper = from + SPECIES.loopBound(to - from); i < upper; i += SPECIES.length()) {
+            DoubleVector nvx = DoubleVector.fromArray(SPECIES, vx, i).add(DoubleVector.fromArray(SPECIES, ax, i));
+            DoubleVector nvy = DoubleVector.fromArray(SPECIES, vy, i).add(DoubleVector.fromArray(SPECIES, ay, i));
+            DoubleVector nvz = DoubleVector.fromArray(SPECIES, vz, i).add(DoubleVector.fromArray(SPECIES, az, i));
+
+            DoubleVector s = nvx.mul(nvx).add(nvy.mul(nvy)).add(nvz.mul(nvz)).lanewise(VectorOperators.SQRT);
+            s.intoArray(speed, i);
+
+            // Scale only the lanes over the limit, like the scalar branch
+            DoubleVector lim = DoubleVector.fromArray(SPECIES, limit, i);
+            VectorMask<Double> over = s.compare(VectorOperators.GT, lim);
+            if (over.anyTrue()) {
+                DoubleVector scale = lim.div(s);
+                nvx = nvx.blend(nvx.mul(scale), over);
+                nvy = nvy.blend(nvy.mul(scale), over);
+                nvz = nvz.blend(nvz.mul(scale), over);
+            }
+            nvx.intoArray(vx, i);
+            nvy.intoArray(vy, i);
+            nvz.intoArray(vz, i);
+
+            DoubleVector.fromArray(SPECIES, x, i).add(nvx).intoArray(x, i);
+            DoubleVector.fromArray(SPECIES, y, i).add(nvy).intoArray(y, i);
+            DoubleVector.fromArray(SPECIES, z, i).add(nvz).intoArray(z, i);
+        }
+        for (; i < to; i++)
+            integrateClamped(x, y, z, vx, vy, vz, ax, ay, az, limit, speed, i);
+    }
+}
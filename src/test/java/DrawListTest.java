@@ -0,0 +1,54 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DrawListTest {
+    @Test
+    void sortMatchesStableFarToNearOrder() {
+        Random random = new Random(11);
+        DrawList list = new DrawList();
+        for (int frame = 0; frame < 20; frame++) {
+            int n = 1 + random.nextInt(5000);
+            float[] depths = new float[n];
+            list.clear();
+            for (int i = 0; i < n; i++) {
+                // Negative, positive, repeated and wide-ranging depths
+                depths[i] = switch (i % 4) {
+                    case 0 -> (float) ((random.nextDouble() - 0.5) * 2000);
+                    case 1 -> random.nextInt(10);
+                    case 2 -> (float) (random.nextDouble() * 1e7);
+                    default -> -random.nextInt(3);
+                };
+                list.add(depths[i], i % 3, i);
+            }
+            list.sort();
+
+            // Brute force: stable sort by depth, far (larger) first
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < n; i++)
+                expected.add(i);
+            expected.sort(Comparator.comparingDouble((Integer i) -> depths[i]).reversed());
+
+            assertEquals(n, list.size());
+            for (int k = 0; k < n; k++) {
+                assertEquals((int) expected.get(k), list.index(k), "position " + k);
+                assertEquals(expected.get(k) % 3, list.tag(k));
+            }
+        }
+    }
+
+    @Test
+    void alreadySortedInputIsKept() {
+        DrawList list = new DrawList();
+        for (int i = 0; i < 100; i++)
+            list.add(100 - i, DrawList.FISH, i);
+        list.sort();
+        for (int k = 0; k < 100; k++)
+            assertEquals(k, list.index(k));
+    }
+}
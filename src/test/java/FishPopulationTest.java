@@ -0,0 +1,37 @@
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FishPopulationTest {
+    @Test
+    void restoredTankDrawsWithoutAnAtlas() {
+        // A tank restored on launch, before the asset cache has delivered the atlas
+        Simulation original = new Simulation(1024, 600, 256, 1, 8);
+        original.spawnFish(200, new double[] { 500, 400 }, new double[] { 300, 200 });
+        original.step(Simulation.TICK_DT);
+        TankSnapshot saved = new TankSnapshot(256);
+        original.saveTo(saved);
+        original.shutdown();
+
+        Simulation restored = new Simulation(1024, 600, 256, 1, 8);
+        restored.restoreFrom(saved);
+        FishPopulation fish = restored.getFish();
+        Projection projection = new Projection();
+        fish.project(new Camera(1024, 600), projection);
+
+        GraphicsContext gc = new Canvas(1024, 600).getGraphicsContext2D();
+        FishLod lod = new FishLod();
+        int drawn = 0;
+        for (int i = 0; i < fish.size(); i++) {
+            if (!fish.isInView(i, projection, 1024, 600))
+                continue;
+            fish.draw(gc, i, null, projection, lod);
+            fish.draw(gc, i, new SpriteAtlas(2), projection, lod); // Atlas whose sprites have not arrived
+            drawn++;
+        }
+        restored.shutdown();
+        assertTrue(drawn > 0, "no fish in view");
+    }
+}
@@ -0,0 +1,56 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class IntegrationKernelTest {
+    private static final int SIZE = 1027; // Not a multiple of any vector width, so the tail loop runs too
+
+    @AfterEach
+    void restoreDefault() {
+        IntegrationKernel.useVector(true);
+    }
+
+    @Test
+    void vectorKernelMatchesScalarBitForBit() {
+        IntegrationKernel.useVector(false);
+        IntegrationKernel scalar = IntegrationKernel.get();
+        IntegrationKernel.useVector(true);
+        IntegrationKernel vector = IntegrationKernel.get();
+        assumeTrue(vector.getName().startsWith("vector"), "Vector API not available");
+
+        double[][] a = arrays(1);
+        double[][] b = arrays(1);
+        for (int round = 0; round < 5; round++) {
+            run(scalar, a, round);
+            run(vector, b, round);
+        }
+        for (int k = 0; k < a.length; k++)
+            assertArrayEquals(a[k], b[k], "array " + k); // assertArrayEquals on doubles compares bits
+    }
+
+    // Mixed ranges, including ones that start off a vector boundary
+    private static void run(IntegrationKernel kernel, double[][] s, int round) {
+        int from = round % 3;
+        kernel.integrateClamped(s[0], s[1], s[2], s[3], s[4], s[5], s[6], s[7], s[8], s[9], s[10], from, SIZE);
+        kernel.integrate(s[0], s[3], Simulation.TICK_DT, 0, SIZE - round);
+        kernel.add(s[11], -Simulation.TICK_DT, from, SIZE);
+    }
+
+    // x, y, z, vx, vy, vz, ax, ay, az, limit, speed, life
+    private static double[][] arrays(long seed) {
+        Random random = new Random(seed);
+        double[][] s = new double[12][SIZE];
+        for (int k = 0; k < 9; k++)
+            for (int i = 0; i < SIZE; i++)
+                s[k][i] = (random.nextDouble() - 0.5) * (k < 3 ? 1000 : 6);
+        for (int i = 0; i < SIZE; i++) {
+            s[9][i] = 1 + random.nextDouble() * 2; // Some fish over the limit, some under
+            s[11][i] = random.nextDouble() * 5;
+        }
+        return s;
+    }
+}
@@ -0,0 +1,87 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReplayTest {
+    private static final double WIDTH = 1024;
+    private static final double HEIGHT = 600;
+    private static final int PARTICLES = 2048;
+    private static final int TICKS = 600;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayReproducesStateHash() throws IOException {
+        Path log = dir.resolve("session.bin");
+        Simulation recorded = new Simulation(WIDTH, HEIGHT, PARTICLES, 2, 1234);
+        try (InputRecorder recorder = new InputRecorder(log, 1234, WIDTH, HEIGHT, PARTICLES)) {
+            recorded.setRecorder(recorder);
+            runSession(recorded);
+        }
+        long expected = recorded.stateHash();
+        recorded.shutdown();
+
+        InputReplay replay = InputReplay.read(log, 2);
+        Simulation replayed = replay.createSimulation(3); // Worker count must not matter
+        replayed.post(Simulation.Command.dropFood(5, 5)); // Live input is ignored during a replay
+        for (int t = 0; t < TICKS; t++)
+            replayed.step(Simulation.TICK_DT);
+        long actual = replayed.stateHash();
+        replayed.shutdown();
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void differentSeedsDiverge() {
+        Simulation a = new Simulation(WIDTH, HEIGHT, PARTICLES, 1, 1);
+        Simulation b = new Simulation(WIDTH, HEIGHT, PARTICLES, 1, 2);
+        runSession(a);
+        runSession(b);
+        assertNotEquals(a.stateHash(), b.stateHash());
+        a.shutdown();
+        b.shutdown();
+    }
+
+    @Test
+    void rejectsUnknownSpriteTypes() throws IOException {
+        Path log = dir.resolve("bad.bin");
+        try (InputRecorder recorder = new InputRecorder(log, 1, WIDTH, HEIGHT, PARTICLES)) {
+            recorder.record(0, Simulation.Command.spawnFish(5, 100, 50, 3));
+        }
+        assertThrows(IOException.class, () -> InputReplay.read(log, 5));
+    }
+
+    // Every kind of input at fixed ticks
+    static void runSession(Simulation simulation) {
+        simulation.post(Simulation.Command.emission(1));
+        for (int t = 0; t < TICKS; t++) {
+            if (t == 2)
+                simulation.post(Simulation.Command.spawnFish(0, 500, 300, 200));
+            if (t == 8)
+                simulation.post(Simulation.Command.spawnFish(1, 400, 200, 150));
+            if (t % 37 == 5)
+                simulation.post(Simulation.Command.dropFood(100 + t % 800, 200));
+            if (t == 100)
+                simulation.post(Simulation.Command.left(true));
+            if (t == 160)
+                simulation.post(Simulation.Command.left(false));
+            if (t == 200)
+                simulation.post(Simulation.Command.toggleCinematic());
+            if (t == 250)
+                simulation.post(Simulation.Command.rotate(40));
+            if (t == 300)
+                simulation.post(Simulation.Command.schooling(false));
+            if (t == 400)
+                simulation.post(Simulation.Command.emission(0.5));
+            simulation.step(Simulation.TICK_DT);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SpatialHashTest {
+    @Test
+    void nearestMatchesBruteForce() {
+        Random random = new Random(3);
+        for (int n : new int[] { 1, 7, 200, 5000 }) {
+            FishPopulation fish = new FishPopulation(n);
+            for (int i = 0; i < n; i++) {
+                fish.add(i % 4, 100, 50, random.nextDouble() * 3000 - 1000, random.nextDouble() * 600,
+                        random.nextDouble() * 1000 - 200, 1, 0.2, i);
+            }
+            SpatialHash grid = new SpatialHash(100);
+            grid.rebuild(fish);
+
+            for (int q = 0; q < 500; q++) {
+                // Queries inside the tank and far outside it
+                double spread = q % 5 == 0 ? 20000 : 3000;
+                double x = random.nextDouble() * spread - spread / 3;
+                double y = random.nextDouble() * spread / 5;
+                double z = random.nextDouble() * spread / 3 - 200;
+
+                double best = Double.MAX_VALUE;
+                for (int i = 0; i < n; i++)
+                    best = Math.min(best, fish.distanceTo(i, x, y, z));
+
+                int found = grid.nearest(x, y, z);
+                assertEquals(best, fish.distanceTo(found, x, y, z), "n=" + n + " query " + q);
+            }
+        }
+    }
+
+    @Test
+    void emptyGridHasNoNearest() {
+        SpatialHash grid = new SpatialHash(100);
+        grid.rebuild(new FishPopulation());
+        assertEquals(-1, grid.nearest(0, 0, 0));
+    }
+}
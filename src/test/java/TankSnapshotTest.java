@@ -0,0 +1,86 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TankSnapshotTest {
+    private static final int PARTICLES = 2048;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writeThenReadRoundTripsExactly() throws IOException {
+        Simulation simulation = new Simulation(1024, 600, PARTICLES, 1, 77);
+        runTank(simulation);
+        TankSnapshot saved = new TankSnapshot(PARTICLES);
+        simulation.saveTo(saved);
+        simulation.shutdown();
+
+        Path first = dir.resolve("first.bin");
+        Path second = dir.resolve("second.bin");
+        saved.write(first);
+        TankSnapshot loaded = TankSnapshot.read(first, PARTICLES);
+        loaded.write(second);
+
+        assertEquals(saved.getTick(), loaded.getTick());
+        assertEquals(saved.getFishCount(), loaded.getFishCount());
+        assertEquals(saved.hash(), loaded.hash());
+        assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second));
+    }
+
+    @Test
+    void restoredTankContinuesIdentically() throws IOException {
+        Simulation original = new Simulation(1024, 600, PARTICLES, 1, 5);
+        runTank(original);
+        TankSnapshot saved = new TankSnapshot(PARTICLES);
+        original.saveTo(saved);
+        Path file = dir.resolve("tank.bin");
+        saved.write(file);
+
+        Simulation restored = new Simulation(1024, 600, PARTICLES, 1, 99); // Seed comes from the snapshot
+        restored.restoreFrom(TankSnapshot.read(file, PARTICLES));
+        for (int t = 0; t < 120; t++) {
+            original.step(Simulation.TICK_DT);
+            restored.step(Simulation.TICK_DT);
+        }
+        assertEquals(original.stateHash(), restored.stateHash());
+        original.shutdown();
+        restored.shutdown();
+    }
+
+    @Test
+    void rejectsTruncatedFile() throws IOException {
+        Simulation simulation = new Simulation(1024, 600, PARTICLES, 1, 3);
+        runTank(simulation);
+        TankSnapshot saved = new TankSnapshot(PARTICLES);
+        simulation.saveTo(saved);
+        simulation.shutdown();
+
+        Path file = dir.resolve("tank.bin");
+        saved.write(file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+        assertThrows(IOException.class, () -> TankSnapshot.read(file, PARTICLES));
+    }
+
+    // A tank with fish, falling and eaten food, particles and a camera turn
+    private static void runTank(Simulation simulation) {
+        simulation.spawnFish(300, new double[] { 500, 400 }, new double[] { 300, 200 });
+        simulation.post(Simulation.Command.left(true));
+        for (int t = 0; t < 400; t++) {
+            if (t % 25 == 0)
+                simulation.addFood(100 + t % 800, 50, 100);
+            if (t == 60)
+                simulation.post(Simulation.Command.left(false));
+            simulation.step(Simulation.TICK_DT);
+        }
+    }
+}